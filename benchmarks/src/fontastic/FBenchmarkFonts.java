@@ -0,0 +1,167 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.util.Random;
+
+import processing.core.PVector;
+
+/**
+ * Class FBenchmarkFonts
+ *
+ * Creates the outlines of the example sketches without Processing, with a
+ * fixed seed so every benchmark run builds the same fonts. Fonts without a
+ * directory can only be built in memory.
+ *
+ */
+class FBenchmarkFonts {
+
+	static final float CHAR_WIDTH = 512;
+
+	/**
+	 * Creates the font of an example.
+	 */
+	static Fontastic example(String example, String fontname, File directory) {
+		if (example.equals("wave"))
+			return wave(fontname, directory, 1);
+		if (example.equals("random"))
+			return random(fontname, directory, 1);
+		if (example.equals("confetti"))
+			return confetti(fontname, directory, 1, 60);
+		throw new IllegalArgumentException("Unknown example " + example);
+	}
+
+	/**
+	 * WaveFont: a square of 4 points with random control points per letter.
+	 */
+	static Fontastic wave(String fontname, File directory, long seed) {
+		Random random = new Random(seed);
+		Fontastic f = create(fontname, directory);
+		f.setAdvanceWidth((int) CHAR_WIDTH);
+		float rectSize = CHAR_WIDTH * 0.5f;
+		float rnd = CHAR_WIDTH * 0.2f;
+		for (char c : Fontastic.alphabet) {
+			FPoint[] points = new FPoint[4];
+			points[0] = new FPoint(CHAR_WIDTH / 2 - rectSize / 2, CHAR_WIDTH / 2 - rectSize / 2);
+			points[1] = new FPoint(CHAR_WIDTH / 2 - rectSize / 2, CHAR_WIDTH / 2 + rectSize / 2);
+			points[2] = new FPoint(CHAR_WIDTH / 2 + rectSize / 2, CHAR_WIDTH / 2 + rectSize / 2);
+			points[3] = new FPoint(CHAR_WIDTH / 2 + rectSize / 2, CHAR_WIDTH / 2 - rectSize / 2);
+			points[0].setControlPoint1(points[0].x + rnd, points[0].y + random(random, rnd));
+			points[1].setControlPoint1(points[1].x + random(random, rnd), points[1].y - rnd);
+			points[2].setControlPoint1(points[2].x - rnd, points[2].y + random(random, rnd));
+			points[3].setControlPoint1(points[3].x - random(random, rnd), points[3].y + rnd);
+			points[0].setControlPoint2(points[0].x + random(random, rnd), points[0].y + rnd);
+			points[1].setControlPoint2(points[1].x + rnd, points[1].y + random(random, rnd));
+			points[2].setControlPoint2(points[2].x + random(random, rnd), points[2].y - rnd);
+			points[3].setControlPoint2(points[3].x - rnd, points[3].y + random(random, rnd));
+			f.addGlyph(c).addContour(points);
+		}
+		return f;
+	}
+
+	/**
+	 * RandomFont: a random quadrilateral per letter, and the same scaled by
+	 * 50% in y for the lowercase letter.
+	 */
+	static Fontastic random(String fontname, File directory, long seed) {
+		Random random = new Random(seed);
+		Fontastic f = create(fontname, directory);
+		f.setAdvanceWidth(600);
+		for (char c : Fontastic.alphabet) {
+			PVector[] points = new PVector[4];
+			points[0] = new PVector(0, 0);
+			points[1] = new PVector(random.nextFloat() * 512, 0);
+			points[2] = new PVector(random.nextFloat() * 512, random.nextFloat() * 1024);
+			points[3] = new PVector(0, random.nextFloat() * 1024);
+			f.addGlyph(c).addContour(points);
+
+			PVector[] pointsLc = new PVector[points.length];
+			for (int i = 0; i < pointsLc.length; i++) {
+				pointsLc[i] = new PVector(points[i].x, points[i].y * 0.5f);
+			}
+			f.addGlyph(Character.toLowerCase(c)).addContour(pointsLc);
+		}
+		return f;
+	}
+
+	/**
+	 * ConfettiFont: many small hexagons per letter. The sketch places them
+	 * along the outline of a letter of a system font, here they are placed
+	 * along an ellipse.
+	 */
+	static Fontastic confetti(String fontname, File directory, long seed, int confettiPerGlyph) {
+		Random random = new Random(seed);
+		Fontastic f = create(fontname, directory);
+		f.setAdvanceWidth((int) (CHAR_WIDTH * 1.1f));
+		int resolution = 6;
+		float circleSize = 20;
+		for (char c : Fontastic.alphabet) {
+			FGlyph glyph = f.addGlyph(c);
+			for (int i = 0; i < confettiPerGlyph; i++) {
+				float t = (float) (2 * Math.PI * i / confettiPerGlyph);
+				float cx = CHAR_WIDTH / 2 + (float) Math.cos(t) * 200 + random(random, 30);
+				float cy = 400 + (float) Math.sin(t) * 350 + random(random, 30);
+				PVector[] points = new PVector[resolution];
+				for (int j = 0; j < resolution; j++) {
+					float angle = (float) (2 * Math.PI / resolution * j);
+					points[j] = new PVector(cx + (float) Math.sin(angle) * circleSize, cy
+							+ (float) Math.cos(angle) * circleSize);
+				}
+				glyph.addContour(points);
+			}
+		}
+		return f;
+	}
+
+	/**
+	 * Returns a random contour of points on a circle.
+	 */
+	static PVector[] circle(Random random, int pointCount) {
+		PVector[] points = new PVector[pointCount];
+		for (int i = 0; i < pointCount; i++) {
+			float angle = (float) (2 * Math.PI * i / pointCount);
+			float radius = 200 + random(random, 40);
+			points[i] = new PVector(256 + (float) Math.cos(angle) * radius, 400
+					+ (float) Math.sin(angle) * radius);
+		}
+		return points;
+	}
+
+	private static Fontastic create(String fontname, File directory) {
+		Fontastic f = directory != null ? new Fontastic(fontname, directory) : new Fontastic(fontname);
+		f.setDebug(false);
+		return f;
+	}
+
+	/** Like random(-range, range) in Processing */
+	private static float random(Random random, float range) {
+		return (random.nextFloat() * 2 - 1) * range;
+	}
+
+}
@@ -0,0 +1,63 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Class FBenchmarks
+ *
+ * Runs the benchmarks with the GC profiler, which adds the bytes allocated
+ * per operation (gc.alloc.rate.norm) to every result, and writes the results
+ * as JSON so they can be compared between versions.
+ *
+ * Arguments: a regular expression of the benchmarks to run (default is
+ * all), and the JSON file (default is fontastic-benchmarks.json).
+ *
+ */
+public class FBenchmarks {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "fontastic\\..*Benchmark";
+		String result = args.length > 1 ? args[1] : "fontastic-benchmarks.json";
+
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,83 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import processing.core.PVector;
+
+/**
+ * Class FContourBenchmark
+ *
+ * Creating contours from PVector arrays, as the examples do for every glyph.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FContourBenchmark {
+
+	@Param({ "4", "64", "1024" })
+	int pointCount;
+
+	private PVector[] points;
+
+	@Setup
+	public void setup() {
+		points = FBenchmarkFonts.circle(new Random(1), pointCount);
+	}
+
+	@Benchmark
+	public FContour contour() {
+		return new FContour(points);
+	}
+
+	@Benchmark
+	public FGlyph addContour() {
+		FGlyph glyph = new FGlyph('A');
+		glyph.addContour(points);
+		return glyph;
+	}
+
+}
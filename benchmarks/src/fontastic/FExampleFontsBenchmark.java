@@ -0,0 +1,91 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class FExampleFontsBenchmark
+ *
+ * Builds the fonts of the examples from start to end, from creating the
+ * outlines to writing the TTF, WOFF and HTML files, with doubletype and in
+ * memory.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FExampleFontsBenchmark {
+
+	@Param({ "wave", "random", "confetti" })
+	String example;
+
+	@Param({ "false", "true" })
+	boolean inMemoryBuild;
+
+	private File directory;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = File.createTempFile("fontastic", "bench");
+		directory.delete();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		FPipelineBenchmark.delete(directory);
+	}
+
+	@Benchmark
+	public FBuildResult buildFont() {
+		Fontastic f = FBenchmarkFonts.example(example, "Example", directory);
+		f.setInMemoryBuild(inMemoryBuild);
+		f.setTemplate("<html><body style=\"font-family: %FONTNAME%\">%GLYPHS%</body></html>");
+		return f.buildFont();
+	}
+
+}
@@ -0,0 +1,95 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class FGlyphStoreBenchmark
+ *
+ * Adding and looking up glyphs by code point, for fonts of different sizes.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FGlyphStoreBenchmark {
+
+	@Param({ "26", "1000", "10000" })
+	int glyphCount;
+
+	private int[] codePoints;
+	private Fontastic font;
+
+	@Setup
+	public void setup() {
+		codePoints = new int[glyphCount];
+		for (int i = 0; i < glyphCount; i++) {
+			codePoints[i] = 0x4E00 + i; // CJK ideographs
+		}
+		font = new Fontastic("GlyphStore");
+		font.setDebug(false);
+		for (int codePoint : codePoints) {
+			font.addGlyph(codePoint);
+		}
+	}
+
+	@Benchmark
+	public Fontastic addGlyph() {
+		Fontastic f = new Fontastic("GlyphStore");
+		f.setDebug(false);
+		for (int codePoint : codePoints) {
+			f.addGlyph(codePoint);
+		}
+		return f;
+	}
+
+	@Benchmark
+	public void getGlyph(Blackhole blackhole) {
+		for (int codePoint : codePoints) {
+			blackhole.consume(font.getGlyph(codePoint));
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class FPipelineBenchmark
+ *
+ * The stages of a build one by one: the TrueType font built with doubletype,
+ * compiling and assembling it in memory, converting it to WOFF with sfntly
+ * and to WOFF2, and rendering the HTML template. The WOFF and WOFF2
+ * benchmarks together compare their encode times.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FPipelineBenchmark {
+
+	@Param({ "wave", "random", "confetti" })
+	String example;
+
+	private File directory;
+	private Fontastic doubletypeFont;
+	private Fontastic font;
+	private List<FGlyph> glyphs;
+	private FFontInfo info;
+	private List<FCompiledGlyph> compiledGlyphs;
+	private byte[] ttf;
+	private FTemplate template;
+	private Map<String, String> templateValues;
+	private String templateText;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = File.createTempFile("fontastic", "bench");
+		directory.delete();
+		doubletypeFont = FBenchmarkFonts.example(example, "Pipeline", directory);
+
+		font = FBenchmarkFonts.example(example, "Pipeline", null);
+		glyphs = new ArrayList<FGlyph>();
+		for (char[] letters : new char[][] { Fontastic.alphabet, Fontastic.alphabetLc }) {
+			for (char c : letters) {
+				if (font.getGlyph(c) != null)
+					glyphs.add(font.getGlyph(c));
+			}
+		}
+		info = font.getInfo();
+		compiledGlyphs = font.compileGlyphs();
+		ttf = font.buildFontBytes(Fontastic.Format.TTF);
+
+		templateText = previewTemplate();
+		template = new FTemplate(templateText);
+		templateValues = new HashMap<String, String>();
+		templateValues.put("FONTNAME", "Pipeline");
+		templateValues.put("WOFFFILENAME", "Pipeline.woff");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		doubletypeFont.cleanup();
+		delete(directory);
+	}
+
+	@Benchmark
+	public byte[] trueTypeDoubletype() {
+		return doubletypeFont.buildFontBytes(Fontastic.Format.TTF);
+	}
+
+	@Benchmark
+	public void compileGlyphs(Blackhole blackhole) {
+		FGlyphCompiler compiler = new FGlyphCompiler();
+		for (FGlyph glyph : glyphs) {
+			blackhole.consume(compiler.compile(glyph));
+		}
+	}
+
+	@Benchmark
+	public byte[] assembleTrueType() throws IOException {
+		return new FTrueTypeWriter(info).write(compiledGlyphs);
+	}
+
+	@Benchmark
+	public byte[] woff() {
+		return Fontastic.toWoff(ttf);
+	}
+
+	@Benchmark
+	public byte[] woff2() throws IOException {
+		return FWoff2Writer.convert(ttf);
+	}
+
+	@Benchmark
+	public FTemplate parseTemplate() {
+		return new FTemplate(templateText);
+	}
+
+	@Benchmark
+	public byte[] renderTemplate() {
+		return template.render(templateValues);
+	}
+
+	/**
+	 * Returns a template like the one of the examples, with a preview of
+	 * every letter.
+	 */
+	private static String previewTemplate() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html>\n<title>%FONTNAME%</title>\n<style>\n@font-face {\n")
+				.append("  font-family: \"myfont\";\n  src: url(\"%WOFFFILENAME%\") format('woff');\n}\n")
+				.append(".testfont {\n  font-family: myfont;\n  font-size: 50px;\n}\n</style>\n")
+				.append("<body>\n<h1>WOFF preview of font %FONTNAME%</h1>\n<p>\n");
+		for (char c : Fontastic.alphabet) {
+			sb.append("<div class=\"glyph\"><span class=\"testfont\">").append(c)
+					.append("</span><br /><span class=\"readable\">").append(c).append("</span></div>\n");
+		}
+		sb.append("</p>\n</body>\n</html>\n");
+		return sb.toString();
+	}
+
+	static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -20,6 +20,7 @@ import geomerative.*;
 
 
 Fontastic f;
+FGlyphRenderer preview; // draws the glyphs before the font is built
 RFont font;
 
 PFont myFont;
@@ -103,6 +104,8 @@ void initFont() {
   f.setVersion("0.1");
   f.setAdvanceWidth(int(charWidth * 1.1));
 
+  preview = new FGlyphRenderer(f);
+
 }
 
 void updateFont() {
@@ -159,32 +162,8 @@ void createFont() {
 // A function to preview a glyph in Processing
 
 void renderGlyphSolid(char c) {
-    
-  FContour[] contours = f.getGlyph(c).getContoursArray();
-
-  for (int j=0; j<contours.length; j++) {
-
-    FPoint[] points = f.getGlyph(c).getContour(j).getPointsArray();
-
-    if (points.length > 0) { //just to be sure    
-      // Draw the solid shape in Processing
-      beginShape();      
-      for (int i=0; i<points.length; i++) {
-        FPoint p1 = points[i];
-        FPoint p2 = points[(i+1)%points.length];
-        if (p1.hasControlPoint2() && p2.hasControlPoint1()) {
-          if (i == 0) { 
-            vertex(points[0].x, -points[0].y);
-          }
-          bezierVertex(p1.controlPoint2.x, -p1.controlPoint2.y, p2.controlPoint1.x, -p2.controlPoint1.y, p2.x, -p2.y);
-        }
-        else {
-          vertex(p1.x, -p1.y);
-        }
-      }
-      endShape();
-    }
-  }
+
+  shape(preview.getShape(g, c)); // drawn with the current fill and stroke
 
 }
 
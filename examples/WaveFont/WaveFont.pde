@@ -113,7 +113,7 @@ void randomizeFont() {
 
 void renderGlyphOutline(char c, color linecolor, color handlecolor) {
 
-    FPoint[] points = f.getGlyph(c).getContour(0).getPointsArray();
+    FPoint[] points = f.getGlyph(c).getContour(0).copyPoints();
 
     // Draw the outline in Processing 
     for (int i=0; i<points.length; i++) {
@@ -130,7 +130,7 @@ void renderGlyphSolid(char c) {
 
   for (int j=0; j<contours.length; j++) {
 
-    FPoint[] points = f.getGlyph(c).getContour(j).getPointsArray();
+    FPoint[] points = f.getGlyph(c).getContour(j).copyPoints();
 
     if (points.length > 0) { //just to be sure    
       // Draw the solid shape in Processing
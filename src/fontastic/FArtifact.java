@@ -0,0 +1,108 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+
+/**
+ * Class FArtifact
+ *
+ * A file written by Fontastic.buildFont(): a font file or the HTML template,
+ * with its size and the time it took to write it.
+ *
+ */
+public class FArtifact {
+
+	private final File file;
+	private final Fontastic.Format format;
+	private final long size;
+	private final long writeNanos;
+	private final boolean written;
+
+	FArtifact(File file, Fontastic.Format format, long size, long writeNanos, boolean written) {
+		this.file = file;
+		this.format = format;
+		this.size = size;
+		this.writeNanos = writeNanos;
+		this.written = written;
+	}
+
+	/**
+	 * Returns the file.
+	 * 
+	 * @return File
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the format of the font file.
+	 * 
+	 * @return The format, or null for the HTML template.
+	 */
+	public Fontastic.Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * Returns the size of the file in bytes.
+	 * 
+	 * @return long
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the time it took to write the file, 0 for the TTF file of fonts
+	 * built with doubletype, which doubletype writes itself.
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	public long getWriteNanos() {
+		return writeNanos;
+	}
+
+	/**
+	 * Returns whether the file has been written. If not, the file has been
+	 * left as it was before the build.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isWritten() {
+		return written;
+	}
+
+	@Override
+	public String toString() {
+		return file + " (" + (written ? size + " bytes, " + writeNanos / 1000000f + " ms"
+				: "not written") + ")";
+	}
+
+}
@@ -0,0 +1,70 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Class FAxis
+ *
+ * Stores an axis of a variable font, e.g. weight from 100 to 900, and converts
+ * values on the axis to the normalized range -1 to 1 used in the font tables.
+ *
+ */
+class FAxis {
+
+	final String tag;
+	final String name;
+	final float minValue;
+	final float defaultValue;
+	final float maxValue;
+
+	FAxis(String tag, String name, float minValue, float defaultValue, float maxValue) {
+		if (tag == null || !tag.matches("[\\x20-\\x7E]{4}"))
+			throw new IllegalArgumentException("Axis tag must be 4 characters: " + tag);
+		if (minValue > defaultValue || defaultValue > maxValue)
+			throw new IllegalArgumentException("Axis " + tag
+					+ ": the default value must be within the minimum and the maximum");
+		this.tag = tag;
+		this.name = name;
+		this.minValue = minValue;
+		this.defaultValue = defaultValue;
+		this.maxValue = maxValue;
+	}
+
+	/**
+	 * Returns value mapped to -1 (minimum), 0 (default) and 1 (maximum).
+	 */
+	float normalize(float value) {
+		value = Math.max(minValue, Math.min(maxValue, value));
+		if (value < defaultValue)
+			return (value - defaultValue) / (defaultValue - minValue);
+		if (value > defaultValue)
+			return (value - defaultValue) / (maxValue - defaultValue);
+		return 0;
+	}
+
+}
@@ -0,0 +1,598 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class FBrotliEncoder
+ *
+ * Compresses data to the Brotli format (RFC 7932) for WOFF2, in plain Java so
+ * that no native library is needed. Matches are found with hash chains and
+ * lazy matching, and every meta-block gets one Huffman code for literals, one
+ * for insert-and-copy lengths and one for distances. Block splitting, context
+ * modeling and the static dictionary are not used, so the output is somewhat
+ * larger than the one of the reference encoder, but any Brotli decoder reads it.
+ *
+ */
+class FBrotliEncoder {
+
+	/** Window of 4 MB, as in the stream header */
+	private static final int WINDOW_BITS = 22;
+	private static final int MAX_DISTANCE = (1 << WINDOW_BITS) - 16;
+
+	/** Maximum length of a meta-block */
+	private static final int MAX_META_BLOCK = 1 << 24;
+
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_MATCH = 1 << 16;
+	private static final int HASH_BITS = 17;
+	private static final int MAX_CHAIN = 48;
+
+	private static final int[] INSERT_BASE = { 0, 1, 2, 3, 4, 5, 6, 8, 10, 14, 18, 26, 34, 50,
+			66, 98, 130, 194, 322, 578, 1090, 2114, 6210, 22594 };
+	private static final int[] INSERT_EXTRA = { 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5,
+			6, 7, 8, 9, 10, 12, 14, 24 };
+	private static final int[] COPY_BASE = { 2, 3, 4, 5, 6, 7, 8, 9, 10, 12, 14, 18, 22, 30, 38,
+			54, 70, 102, 134, 198, 326, 582, 1094, 2118 };
+	private static final int[] COPY_EXTRA = { 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5,
+			5, 6, 7, 8, 9, 10, 24 };
+
+	/** Order in which the code lengths of the code length alphabet are stored */
+	private static final int[] CODE_LENGTH_ORDER = { 1, 2, 3, 4, 0, 5, 17, 6, 16, 7, 8, 9, 10,
+			11, 12, 13, 14, 15 };
+	/** Static code for the code length code lengths 0 to 5, bits as they are written */
+	private static final int[] CODE_LENGTH_CODE = { 0, 7, 3, 2, 1, 15 };
+	private static final int[] CODE_LENGTH_CODE_BITS = { 2, 4, 3, 2, 2, 4 };
+
+	private static final int LITERALS = 256;
+	private static final int COMMANDS = 704;
+	private static final int DISTANCES = 64;
+
+	private FBitWriter out = new FBitWriter();
+	private byte[] data;
+	private int[] head = new int[1 << HASH_BITS];
+	private int[] chain;
+
+	/** Commands of the current meta-block: inserted literals, copy length and distance (0 for none) */
+	private int[] inserts = new int[1024];
+	private int[] copies = new int[1024];
+	private int[] distances = new int[1024];
+	private int commandCount;
+
+	private int lastDistance = 4;
+
+	private FBrotliEncoder(byte[] data) {
+		this.data = data;
+		this.chain = new int[Math.min(data.length, MAX_DISTANCE + 1)];
+		Arrays.fill(head, -1);
+	}
+
+	/**
+	 * Returns data compressed to a Brotli stream.
+	 */
+	static byte[] compress(byte[] data) {
+		return new FBrotliEncoder(data).compress();
+	}
+
+	private byte[] compress() {
+
+		// WBITS 22: 1, then 22 - 17 in three bits
+		out.write(1, 1);
+		out.write(3, WINDOW_BITS - 17);
+
+		if (data.length == 0) {
+			out.write(1, 1); // ISLAST
+			out.write(1, 1); // ISLASTEMPTY
+			return out.toByteArray();
+		}
+
+		for (int start = 0; start < data.length; start += MAX_META_BLOCK) {
+			int end = Math.min(data.length, start + MAX_META_BLOCK);
+			findMatches(start, end);
+			writeMetaBlock(start, end, end == data.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Splits data[start, end) into commands: literals to insert, followed by
+	 * a copy of earlier data. The last command may have no copy.
+	 */
+	private void findMatches(int start, int end) {
+
+		commandCount = 0;
+		int literalStart = start;
+		int pos = start;
+
+		while (pos < end) {
+			int length = 0, distance = 0;
+			if (pos + MIN_MATCH <= end) {
+				long match = longestMatch(pos, end);
+				length = (int) (match >>> 32);
+				distance = (int) match;
+				insertHash(pos);
+
+				// lazy matching: prefer a longer match at the next position
+				if (length >= MIN_MATCH && length < 32 && pos + 1 + MIN_MATCH <= end) {
+					long next = longestMatch(pos + 1, end);
+					if ((int) (next >>> 32) > length + 1) {
+						pos++;
+						length = (int) (next >>> 32);
+						distance = (int) next;
+						insertHash(pos);
+					}
+				}
+			}
+
+			if (length >= MIN_MATCH) {
+				addCommand(pos - literalStart, length, distance);
+				for (int i = pos + 1; i < pos + length && i + MIN_MATCH <= end; i++) {
+					insertHash(i);
+				}
+				pos += length;
+				literalStart = pos;
+			} else {
+				pos++;
+			}
+		}
+		if (literalStart < end) {
+			addCommand(end - literalStart, 0, 0);
+		}
+	}
+
+	/**
+	 * Returns the length (high 32 bits) and distance (low 32 bits) of the
+	 * longest earlier match of the data at pos.
+	 */
+	private long longestMatch(int pos, int end) {
+		int bestLength = 0, bestDistance = 0;
+		int maxLength = Math.min(MAX_MATCH, end - pos);
+		int candidate = head[hash(pos)];
+		for (int steps = 0; candidate >= 0 && steps < MAX_CHAIN; steps++) {
+			int distance = pos - candidate;
+			if (distance > MAX_DISTANCE)
+				break;
+			if (data[candidate + bestLength] == data[pos + bestLength]) {
+				int length = 0;
+				while (length < maxLength && data[candidate + length] == data[pos + length]) {
+					length++;
+				}
+				if (length > bestLength || (length == bestLength && distance == lastDistance)) {
+					bestLength = length;
+					bestDistance = distance;
+					if (length == maxLength)
+						break;
+				}
+			}
+			candidate = chain[candidate % chain.length];
+		}
+		return ((long) bestLength << 32) | bestDistance;
+	}
+
+	private void insertHash(int pos) {
+		int h = hash(pos);
+		chain[pos % chain.length] = head[h];
+		head[h] = pos;
+	}
+
+	private int hash(int pos) {
+		int v = (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8 | (data[pos + 2] & 0xFF) << 16
+				| (data[pos + 3] & 0xFF) << 24;
+		return (v * 0x1E35A7BD) >>> (32 - HASH_BITS);
+	}
+
+	private void addCommand(int insert, int copy, int distance) {
+		if (commandCount == inserts.length) {
+			inserts = Arrays.copyOf(inserts, commandCount * 2);
+			copies = Arrays.copyOf(copies, commandCount * 2);
+			distances = Arrays.copyOf(distances, commandCount * 2);
+		}
+		inserts[commandCount] = insert;
+		copies[commandCount] = copy;
+		distances[commandCount] = distance;
+		commandCount++;
+	}
+
+	private void writeMetaBlock(int start, int end, boolean last) {
+
+		// symbols of all commands, to build the codes
+
+		int[] commandSymbols = new int[commandCount];
+		int[] distanceSymbols = new int[commandCount];
+		int[] distanceExtra = new int[commandCount];
+		int[] literalCounts = new int[LITERALS];
+		int[] commandCounts = new int[COMMANDS];
+		int[] distanceCounts = new int[DISTANCES];
+
+		int pos = start;
+		int distanceBefore = lastDistance;
+		for (int c = 0; c < commandCount; c++) {
+			for (int i = 0; i < inserts[c]; i++) {
+				literalCounts[data[pos + i] & 0xFF]++;
+			}
+			pos += inserts[c] + copies[c];
+
+			int insertCode = code(INSERT_BASE, INSERT_EXTRA, inserts[c]);
+			int copyCode = code(COPY_BASE, COPY_EXTRA, Math.max(copies[c], 2));
+			int distance = distances[c];
+
+			if (copies[c] == 0 || (distance == lastDistance && insertCode < 8 && copyCode < 16)) {
+				// no distance, or the last distance without a distance symbol
+				commandSymbols[c] = (copyCode < 8 ? 0 : 64) + ((insertCode & 7) << 3) + (copyCode & 7);
+				if (copies[c] == 0 && insertCode >= 8) {
+					commandSymbols[c] = commandSymbol(insertCode, copyCode);
+				}
+				distanceSymbols[c] = -1;
+			} else {
+				commandSymbols[c] = commandSymbol(insertCode, copyCode);
+				if (distance == lastDistance) {
+					distanceSymbols[c] = 0;
+				} else {
+					int x = distance + 3;
+					int bits = 31 - Integer.numberOfLeadingZeros(x) - 1;
+					distanceSymbols[c] = 16 + 2 * (bits - 1) + ((x >> bits) & 1);
+					distanceExtra[c] = x & ((1 << bits) - 1);
+					lastDistance = distance;
+				}
+				distanceCounts[distanceSymbols[c]]++;
+			}
+			commandCounts[commandSymbols[c]]++;
+		}
+
+		// header
+
+		int length = end - start;
+		int nibbles = length - 1 < 1 << 16 ? 4 : length - 1 < 1 << 20 ? 5 : 6;
+		out.write(1, last ? 1 : 0); // ISLAST
+		if (last) {
+			out.write(1, 0); // ISLASTEMPTY
+		}
+		out.write(2, nibbles - 4); // MNIBBLES
+		out.write(nibbles * 4, length - 1); // MLEN - 1
+		if (!last) {
+			out.write(1, 0); // ISUNCOMPRESSED
+		}
+		out.write(1, 0); // NBLTYPESL = 1
+		out.write(1, 0); // NBLTYPESI = 1
+		out.write(1, 0); // NBLTYPESD = 1
+		out.write(2, 0); // NPOSTFIX
+		out.write(4, 0); // NDIRECT
+		out.write(2, 0); // context mode of the literal block type
+		out.write(1, 0); // NTREESL = 1
+		out.write(1, 0); // NTREESD = 1
+
+		FPrefixCode literalCode = writePrefixCode(literalCounts, 8);
+		FPrefixCode commandCode = writePrefixCode(commandCounts, 10);
+		FPrefixCode distanceCode = writePrefixCode(distanceCounts, 6);
+
+		// commands
+
+		pos = start;
+		lastDistance = distanceBefore;
+		for (int c = 0; c < commandCount; c++) {
+			int insertCode = code(INSERT_BASE, INSERT_EXTRA, inserts[c]);
+			int copyCode = code(COPY_BASE, COPY_EXTRA, Math.max(copies[c], 2));
+
+			commandCode.write(out, commandSymbols[c]);
+			out.write(INSERT_EXTRA[insertCode], inserts[c] - INSERT_BASE[insertCode]);
+			out.write(COPY_EXTRA[copyCode], Math.max(copies[c], 2) - COPY_BASE[copyCode]);
+			for (int i = 0; i < inserts[c]; i++) {
+				literalCode.write(out, data[pos + i] & 0xFF);
+			}
+			if (copies[c] > 0 && distanceSymbols[c] >= 0) {
+				distanceCode.write(out, distanceSymbols[c]);
+				if (distanceSymbols[c] >= 16) {
+					out.write((distanceSymbols[c] - 16) / 2 + 1, distanceExtra[c]);
+					lastDistance = distances[c];
+				}
+			}
+			pos += inserts[c] + copies[c];
+		}
+
+		if (last) {
+			out.alignToByte();
+		}
+	}
+
+	/**
+	 * Returns the insert-and-copy symbol for commands with a distance symbol.
+	 */
+	private static int commandSymbol(int insertCode, int copyCode) {
+		int base;
+		int insertRange = insertCode >> 3, copyRange = copyCode >> 3;
+		if (insertRange == 0) {
+			base = copyRange == 0 ? 128 : copyRange == 1 ? 192 : 384;
+		} else if (insertRange == 1) {
+			base = copyRange == 0 ? 256 : copyRange == 1 ? 320 : 512;
+		} else {
+			base = copyRange == 0 ? 448 : copyRange == 1 ? 576 : 640;
+		}
+		return base + ((insertCode & 7) << 3) + (copyCode & 7);
+	}
+
+	/**
+	 * Returns the code of a length in a table of base values.
+	 */
+	private static int code(int[] base, int[] extra, int length) {
+		int code = base.length - 1;
+		while (base[code] > length) {
+			code--;
+		}
+		return code;
+	}
+
+	/**
+	 * Writes a prefix code for the symbol counts and returns it.
+	 * 
+	 * @param alphabetBits
+	 *            Bits of a symbol in a simple prefix code
+	 */
+	private FPrefixCode writePrefixCode(int[] counts, int alphabetBits) {
+
+		List<Integer> used = new ArrayList<Integer>();
+		for (int s = 0; s < counts.length; s++) {
+			if (counts[s] > 0) {
+				used.add(s);
+			}
+		}
+
+		if (used.size() <= 2) {
+			// simple prefix code with one symbol (no bits) or two (one bit each)
+			if (used.isEmpty()) {
+				used.add(0);
+			}
+			out.write(2, 1); // HSKIP 1: simple prefix code
+			out.write(2, used.size() - 1); // NSYM - 1
+			for (int symbol : used) {
+				out.write(alphabetBits, symbol);
+			}
+			int[] lengths = new int[counts.length];
+			for (int symbol : used) {
+				lengths[symbol] = used.size() - 1;
+			}
+			return new FPrefixCode(lengths);
+		}
+
+		int[] lengths = FPrefixCode.lengths(counts, 15);
+
+		// code lengths as symbols 0 to 15 and 17 (runs of 3 to 10 zeros)
+		int last = counts.length - 1;
+		while (lengths[last] == 0) {
+			last--;
+		}
+		int[] symbols = new int[last + 1];
+		int[] extra = new int[last + 1];
+		int symbolCount = 0;
+		for (int s = 0; s <= last;) {
+			if (lengths[s] != 0) {
+				symbols[symbolCount++] = lengths[s++];
+				continue;
+			}
+			int run = 0;
+			while (s + run <= last && lengths[s + run] == 0) {
+				run++;
+			}
+			s += run;
+			while (run >= 3) {
+				int n = Math.min(run, 10);
+				extra[symbolCount] = n - 3;
+				symbols[symbolCount++] = 17;
+				run -= n;
+				if (run > 0) {
+					symbols[symbolCount++] = 0; // two 17 in a row would be combined
+					run--;
+				}
+			}
+			while (run-- > 0) {
+				symbols[symbolCount++] = 0;
+			}
+		}
+
+		int[] codeLengthCounts = new int[18];
+		for (int i = 0; i < symbolCount; i++) {
+			codeLengthCounts[symbols[i]]++;
+		}
+		int[] codeLengthLengths = FPrefixCode.lengths(codeLengthCounts, 5);
+		int codeLengthSymbols = 0;
+		for (int count : codeLengthCounts) {
+			codeLengthSymbols += count > 0 ? 1 : 0;
+		}
+		if (codeLengthSymbols == 1) {
+			// a single code length symbol is read without bits
+			for (int i = 0; i < 18; i++) {
+				codeLengthLengths[i] = codeLengthCounts[i] > 0 ? 1 : 0;
+			}
+		}
+
+		out.write(2, 0); // HSKIP 0: complex prefix code
+		int space = 32;
+		for (int i = 0; i < CODE_LENGTH_ORDER.length && space > 0; i++) {
+			int length = codeLengthLengths[CODE_LENGTH_ORDER[i]];
+			out.write(CODE_LENGTH_CODE_BITS[length], CODE_LENGTH_CODE[length]);
+			if (length != 0 && codeLengthSymbols > 1) {
+				space -= 32 >> length;
+			}
+		}
+
+		FPrefixCode codeLengthCode = new FPrefixCode(codeLengthSymbols > 1 ? codeLengthLengths
+				: new int[18]);
+		for (int i = 0; i < symbolCount; i++) {
+			codeLengthCode.write(out, symbols[i]);
+			if (symbols[i] == 17) {
+				out.write(3, extra[i]);
+			}
+		}
+		return new FPrefixCode(lengths);
+	}
+
+	/**
+	 * A canonical prefix code, given by the code length of every symbol.
+	 */
+	private static class FPrefixCode {
+
+		private int[] lengths;
+		private int[] codes;
+
+		FPrefixCode(int[] lengths) {
+			this.lengths = lengths;
+			this.codes = new int[lengths.length];
+
+			int maxLength = 0;
+			for (int length : lengths) {
+				maxLength = Math.max(maxLength, length);
+			}
+			int[] lengthCounts = new int[maxLength + 1];
+			for (int length : lengths) {
+				lengthCounts[length]++;
+			}
+			lengthCounts[0] = 0;
+			int[] nextCode = new int[maxLength + 2];
+			int code = 0;
+			for (int length = 1; length <= maxLength; length++) {
+				code = (code + lengthCounts[length - 1]) << 1;
+				nextCode[length] = code;
+			}
+			for (int s = 0; s < lengths.length; s++) {
+				int length = lengths[s];
+				if (length > 0) {
+					// codes are written starting with their most significant bit
+					codes[s] = Integer.reverse(nextCode[length]++) >>> (32 - length);
+				}
+			}
+		}
+
+		void write(FBitWriter out, int symbol) {
+			out.write(lengths[symbol], codes[symbol]);
+		}
+
+		/**
+		 * Returns the code lengths of a Huffman code for counts, limited to
+		 * maxLength by raising small counts until the code fits.
+		 */
+		static int[] lengths(int[] counts, int maxLength) {
+			for (int minCount = 1;; minCount *= 2) {
+				int[] lengths = huffman(counts, minCount);
+				boolean fits = true;
+				for (int length : lengths) {
+					fits &= length <= maxLength;
+				}
+				if (fits)
+					return lengths;
+			}
+		}
+
+		private static int[] huffman(int[] counts, int minCount) {
+
+			int n = counts.length;
+			int[] lengths = new int[n];
+			long[] nodes = new long[2 * n]; // weight << 32 | index
+			int[] parents = new int[2 * n];
+			int leafCount = 0;
+			for (int s = 0; s < n; s++) {
+				if (counts[s] > 0) {
+					nodes[leafCount++] = ((long) Math.max(counts[s], minCount) << 32) | s;
+				}
+			}
+			if (leafCount == 1) {
+				lengths[(int) nodes[0]] = 1;
+				return lengths;
+			}
+
+			// two queues: sorted leaves and internal nodes in the order they are made
+			Arrays.sort(nodes, 0, leafCount);
+			long[] internal = new long[leafCount];
+			int leafNext = 0, internalNext = 0, internalCount = 0;
+			for (int k = 0; k < leafCount - 1; k++) {
+				long[] pair = new long[2];
+				for (int j = 0; j < 2; j++) {
+					if (internalNext >= internalCount
+							|| (leafNext < leafCount && (nodes[leafNext] >>> 32) <= (internal[internalNext] >>> 32))) {
+						pair[j] = nodes[leafNext++];
+					} else {
+						pair[j] = internal[internalNext++];
+					}
+				}
+				int id = n + k;
+				parents[(int) pair[0]] = id;
+				parents[(int) pair[1]] = id;
+				internal[internalCount++] = (((pair[0] >>> 32) + (pair[1] >>> 32)) << 32) | id;
+			}
+
+			int root = n + leafCount - 2;
+			int[] depth = new int[2 * n];
+			for (int id = root - 1; id >= n; id--) {
+				depth[id] = depth[parents[id]] + 1;
+			}
+			for (int i = 0; i < leafCount; i++) {
+				int s = (int) nodes[i];
+				lengths[s] = depth[parents[s]] + 1;
+			}
+			return lengths;
+		}
+
+	}
+
+	/**
+	 * Writes bits starting with the least significant bit of every byte.
+	 */
+	private static class FBitWriter {
+
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private long buffer;
+		private int bitCount;
+
+		void write(int bits, int value) {
+			if (bits == 0)
+				return;
+			buffer |= ((long) value & ((1L << bits) - 1)) << bitCount;
+			bitCount += bits;
+			while (bitCount >= 8) {
+				bytes.write((int) buffer);
+				buffer >>>= 8;
+				bitCount -= 8;
+			}
+		}
+
+		void alignToByte() {
+			if (bitCount > 0) {
+				write(8 - bitCount, 0);
+			}
+		}
+
+		byte[] toByteArray() {
+			alignToByte();
+			return bytes.toByteArray();
+		}
+
+	}
+
+}
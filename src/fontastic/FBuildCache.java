@@ -0,0 +1,293 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class FBuildCache
+ *
+ * Caches built font files by a digest of everything they are built from: the
+ * outlines and advance widths of all glyphs, the names and metrics, and the
+ * build settings. Building a font that was built before returns the cached
+ * bytes instead of building it again.
+ *
+ * The cache keeps the files in memory and, optionally, in a directory, so
+ * that they survive a restart. Both are limited to a maximum size; the least
+ * recently used files are removed first. A cache can be shared by several
+ * Fontastic objects and threads.
+ *
+ * @example FBuildCache cache = new FBuildCache(64 * 1024 * 1024, new File("/tmp/fonts"));
+ *          f.setBuildCache(cache);
+ *
+ */
+public class FBuildCache {
+
+	private long maxBytes;
+	private File directory;
+
+	private LinkedHashMap<String, byte[]> files = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long size;
+
+	private int hits;
+	private int misses;
+
+	/**
+	 * Creates a cache in memory.
+	 * 
+	 * @param maxBytes
+	 *            Maximum size of all cached files in bytes
+	 */
+	public FBuildCache(long maxBytes) {
+		this(maxBytes, null);
+	}
+
+	/**
+	 * Creates a cache in memory and in a directory. The directory is created
+	 * if it does not exist.
+	 * 
+	 * @param maxBytes
+	 *            Maximum size of all cached files in bytes, in memory and in
+	 *            the directory each
+	 * @param directory
+	 *            Directory for the cached files, or null
+	 */
+	public FBuildCache(long maxBytes, File directory) {
+		this.maxBytes = maxBytes;
+		this.directory = directory;
+		if (directory != null) {
+			directory.mkdirs();
+		}
+	}
+
+	/**
+	 * Returns a cached font file, or null if it is not in the cache.
+	 */
+	synchronized byte[] get(String key, Fontastic.Format format) {
+
+		String name = fileName(key, format);
+		byte[] bytes = files.get(name);
+
+		if (bytes == null && directory != null) {
+			File file = new File(directory, name);
+			if (file.isFile()) {
+				bytes = readFile(file);
+				if (bytes != null) {
+					putInMemory(name, bytes);
+				}
+			}
+		}
+
+		if (bytes == null) {
+			misses++;
+			return null;
+		}
+		if (directory != null) {
+			// the modification time orders the files in the directory by last use
+			new File(directory, name).setLastModified(System.currentTimeMillis());
+		}
+		hits++;
+		return bytes.clone();
+	}
+
+	/**
+	 * Adds a font file to the cache.
+	 */
+	synchronized void put(String key, Fontastic.Format format, byte[] bytes) {
+		if (bytes == null || bytes.length > maxBytes)
+			return;
+
+		String name = fileName(key, format);
+		putInMemory(name, bytes.clone());
+
+		if (directory != null) {
+			writeFile(name, bytes);
+			trimDirectory();
+		}
+	}
+
+	/**
+	 * Removes all files from the cache, in memory and in the directory.
+	 */
+	public synchronized void clear() {
+		files.clear();
+		size = 0;
+		if (directory != null) {
+			for (File file : cachedFiles()) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the size of the files cached in memory in bytes.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Returns how many builds were answered from the cache.
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns how many builds were not in the cache.
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the key of a font: a SHA-256 digest of its glyphs (in order),
+	 * names and metrics, and the build settings, as a hex string.
+	 */
+	static String key(Iterable<FGlyph> glyphs, FFontInfo info, String settings) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(settings.getBytes(Charset.forName("UTF-8")));
+		info.digest(digest);
+		for (FGlyph glyph : glyphs) {
+			digest.update(glyph.getDigest());
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16));
+			key.append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	private void putInMemory(String name, byte[] bytes) {
+		byte[] old = files.put(name, bytes);
+		size += bytes.length - (old != null ? old.length : 0);
+
+		Iterator<Map.Entry<String, byte[]>> iterator = files.entrySet().iterator();
+		while (size > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, byte[]> eldest = iterator.next();
+			size -= eldest.getValue().length;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Removes the least recently used files from the directory until it is
+	 * not larger than maxBytes.
+	 */
+	private void trimDirectory() {
+		File[] cachedFiles = cachedFiles();
+		long directorySize = 0;
+		for (File file : cachedFiles) {
+			directorySize += file.length();
+		}
+		if (directorySize <= maxBytes)
+			return;
+
+		Arrays.sort(cachedFiles, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (int i = 0; i < cachedFiles.length && directorySize > maxBytes; i++) {
+			long length = cachedFiles[i].length();
+			if (cachedFiles[i].delete()) {
+				directorySize -= length;
+			}
+		}
+	}
+
+	private File[] cachedFiles() {
+		File[] cachedFiles = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				String name = file.getName();
+				return file.isFile() && (name.endsWith(".ttf") || name.endsWith(".woff")
+						|| name.endsWith(".woff2"));
+			}
+		});
+		return cachedFiles != null ? cachedFiles : new File[0];
+	}
+
+	/**
+	 * Writes a file to a temporary file first and renames it, so other
+	 * processes sharing the directory never read a partly written file.
+	 */
+	private void writeFile(String name, byte[] bytes) {
+		File file = new File(directory, name);
+		try {
+			FOutputWriter.writeAtomically(file, bytes);
+		} catch (IOException e) {
+			System.out.println("Error while writing file to build cache " + file);
+			e.printStackTrace();
+		}
+	}
+
+	private byte[] readFile(File file) {
+		try {
+			FileChannel channel = new FileInputStream(file).getChannel();
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0)
+						break;
+				}
+				return buffer.array();
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Error while reading file from build cache " + file);
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static String fileName(String key, Fontastic.Format format) {
+		return key + "." + format.name().toLowerCase();
+	}
+
+}
@@ -0,0 +1,100 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class FBuildFuture
+ *
+ * The result of Fontastic.buildFontAsync(). Besides waiting for the build or
+ * reacting to it with the methods of CompletableFuture, a sketch can poll
+ * the progress in draw(), and cancel the build, which stops it after the
+ * stage it is in.
+ *
+ * @example FBuildFuture build = f.buildFontAsync();
+ *          ...
+ *          if (build.isDone()) {
+ *              myFont = createFont(f.getTTFfilename(), 64);
+ *          } else {
+ *              rect(0, 0, width * build.getProgress(), 10);
+ *          }
+ *
+ */
+public class FBuildFuture extends CompletableFuture<FBuildResult> {
+
+	private final int stageCount;
+	private volatile int stagesFinished;
+	private volatile FBuildStage stage;
+
+	FBuildFuture(int stageCount) {
+		this.stageCount = Math.max(1, stageCount);
+	}
+
+	/**
+	 * Returns how much of the build is done, by the number of finished
+	 * stages. Stages whose result is in the build cache are skipped.
+	 * 
+	 * @return Progress from 0 to 1, 1 if the build is done, cancelled or has
+	 *         failed.
+	 */
+	public float getProgress() {
+		if (isDone())
+			return 1;
+		return Math.min(1, stagesFinished / (float) stageCount);
+	}
+
+	/**
+	 * Returns the last finished stage.
+	 * 
+	 * @return The stage, or null if no stage has finished yet.
+	 */
+	public FBuildStage getStage() {
+		return stage;
+	}
+
+	/**
+	 * Returns a listener that passes every stage to listener, counts the
+	 * finished stages and stops the build if it has been cancelled.
+	 */
+	FBuildListener listener(final FBuildListener listener) {
+		return new FBuildListener() {
+			public void stageFinished(FStageMetrics metrics) {
+				if (listener != null)
+					listener.stageFinished(metrics);
+				stage = metrics.getStage();
+				stagesFinished++;
+				if (isCancelled())
+					throw new CancellationException("Build of " + metrics.getFontname()
+							+ " cancelled after " + stage);
+			}
+		};
+	}
+
+}
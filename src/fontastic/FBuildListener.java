@@ -0,0 +1,58 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Interface FBuildListener
+ *
+ * Receives the metrics of every stage of a build, e.g. to export them to a
+ * monitoring system. FBuildStatistics adds them up per stage. Without a
+ * listener, builds are not measured at all.
+ *
+ * Stages are reported from the thread that builds the font, as soon as they
+ * are finished. Stages that are skipped because their result is in the
+ * build cache are not reported.
+ *
+ * @example f.setBuildListener(new FBuildListener() {
+ *              public void stageFinished(FStageMetrics metrics) {
+ *                  println(metrics);
+ *              }
+ *          });
+ *
+ */
+public interface FBuildListener {
+
+	/**
+	 * Called for every finished stage.
+	 * 
+	 * @param metrics
+	 *            Time, size and allocations of the stage
+	 */
+	void stageFinished(FStageMetrics metrics);
+
+}
@@ -0,0 +1,107 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class FBuildResult
+ *
+ * Lists the files written by Fontastic.buildFont(). Every file is written to
+ * a temporary file first and renamed when it is complete, so the font files
+ * in the directory are either the old ones or the new ones, never partly
+ * written ones.
+ *
+ */
+public class FBuildResult {
+
+	private final List<FArtifact> artifacts;
+	private final long nanos;
+
+	FBuildResult(List<FArtifact> artifacts, long nanos) {
+		this.artifacts = Collections.unmodifiableList(new ArrayList<FArtifact>(artifacts));
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Returns the files in the order they were requested: TTF, WOFF, WOFF2
+	 * and the HTML template.
+	 * 
+	 * @return List of FArtifact
+	 */
+	public List<FArtifact> getArtifacts() {
+		return artifacts;
+	}
+
+	/**
+	 * Returns the font file of a format.
+	 * 
+	 * @return The file, or null if the format has not been built.
+	 */
+	public FArtifact getArtifact(Fontastic.Format format) {
+		for (FArtifact artifact : artifacts) {
+			if (artifact.getFormat() == format)
+				return artifact;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether all files have been written.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isComplete() {
+		for (FArtifact artifact : artifacts) {
+			if (!artifact.isWritten())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the time from the first write until all files were written.
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (FArtifact artifact : artifacts) {
+			sb.append(artifact).append('\n');
+		}
+		return sb.toString();
+	}
+
+}
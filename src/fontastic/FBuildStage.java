@@ -0,0 +1,66 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Enum FBuildStage
+ *
+ * The stages of a build reported to an FBuildListener.
+ *
+ */
+public enum FBuildStage {
+
+	/** Compiling the glyphs to TrueType outlines, for builds in memory */
+	COMPILE,
+
+	/** Compiling the glyphs and saving their glyph files, for builds with doubletype */
+	SAVE_GLYPH_FILES,
+
+	/** Assembling the tables of the TrueType font */
+	ASSEMBLE,
+
+	/** Reading the TTF file doubletype has written */
+	RELOAD,
+
+	/** Converting the TTF to WOFF */
+	CONVERT_WOFF,
+
+	/** Converting the TTF to WOFF2 */
+	CONVERT_WOFF2,
+
+	/** Rendering the HTML template */
+	RENDER_TEMPLATE,
+
+	/**
+	 * Writing the files of buildFont(), from the start of the first write
+	 * until all files are written. The files are written while the next
+	 * format is converted, so this overlaps with the conversions.
+	 */
+	WRITE
+
+}
@@ -0,0 +1,140 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Class FBuildStatistics
+ *
+ * Adds up the metrics of all builds per stage: how often a stage ran, and
+ * its total time, bytes, glyphs, points and allocations. One instance can be
+ * shared by many fonts and threads.
+ *
+ * @example FBuildStatistics statistics = new FBuildStatistics();
+ *          f.setBuildListener(statistics);
+ *          f.buildFont();
+ *          println(statistics);
+ *
+ */
+public class FBuildStatistics implements FBuildListener {
+
+	private static final int COUNT = 0;
+	private static final int NANOS = 1;
+	private static final int BYTES = 2;
+	private static final int GLYPHS = 3;
+	private static final int POINTS = 4;
+	private static final int ALLOCATED_BYTES = 5;
+
+	private final Map<FBuildStage, long[]> totals = new EnumMap<FBuildStage, long[]>(
+			FBuildStage.class);
+
+	public synchronized void stageFinished(FStageMetrics metrics) {
+		long[] total = totals.get(metrics.getStage());
+		if (total == null) {
+			total = new long[6];
+			totals.put(metrics.getStage(), total);
+		}
+		total[COUNT]++;
+		total[NANOS] += metrics.getNanos();
+		total[BYTES] += metrics.getBytes();
+		total[GLYPHS] += metrics.getGlyphs();
+		total[POINTS] += metrics.getPoints();
+		total[ALLOCATED_BYTES] += Math.max(0, metrics.getAllocatedBytes());
+	}
+
+	/**
+	 * Returns how often a stage has run.
+	 */
+	public long getCount(FBuildStage stage) {
+		return get(stage, COUNT);
+	}
+
+	/**
+	 * Returns the total time of a stage in nanoseconds.
+	 */
+	public long getNanos(FBuildStage stage) {
+		return get(stage, NANOS);
+	}
+
+	/**
+	 * Returns the total number of bytes produced by a stage.
+	 */
+	public long getBytes(FBuildStage stage) {
+		return get(stage, BYTES);
+	}
+
+	/**
+	 * Returns the total number of glyphs of a stage.
+	 */
+	public long getGlyphs(FBuildStage stage) {
+		return get(stage, GLYPHS);
+	}
+
+	/**
+	 * Returns the total number of points of a stage.
+	 */
+	public long getPoints(FBuildStage stage) {
+		return get(stage, POINTS);
+	}
+
+	/**
+	 * Returns the estimated number of bytes allocated by a stage.
+	 */
+	public long getAllocatedBytes(FBuildStage stage) {
+		return get(stage, ALLOCATED_BYTES);
+	}
+
+	/**
+	 * Sets all counters to 0.
+	 */
+	public synchronized void reset() {
+		totals.clear();
+	}
+
+	private synchronized long get(FBuildStage stage, int index) {
+		long[] total = totals.get(stage);
+		return total != null ? total[index] : 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<FBuildStage, long[]> entry : totals.entrySet()) {
+			long[] total = entry.getValue();
+			sb.append(entry.getKey()).append(": ").append(total[COUNT]).append("x, ")
+					.append(total[NANOS] / 1000000f).append(" ms, ").append(total[BYTES])
+					.append(" bytes, ").append(total[GLYPHS]).append(" glyphs, ")
+					.append(total[POINTS]).append(" points, ").append(total[ALLOCATED_BYTES])
+					.append(" bytes allocated\n");
+		}
+		return sb.toString();
+	}
+
+}
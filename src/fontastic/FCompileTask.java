@@ -0,0 +1,81 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class FCompileTask
+ *
+ * Compiles a range of glyphs on a fork-join pool. Every compiled glyph is
+ * stored at the index of its glyph, so the result does not depend on the
+ * order in which the tasks run. Glyphs that have not changed since the last
+ * build are not compiled again.
+ *
+ */
+class FCompileTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Number of glyphs below which a task compiles its range itself */
+	static final int THRESHOLD = 32;
+
+	private List<FGlyph> glyphs;
+	private FCompiledGlyph[] results;
+	private int from;
+	private int to;
+	private float curveTolerance;
+	private float simplifyTolerance;
+
+	FCompileTask(List<FGlyph> glyphs, FCompiledGlyph[] results, int from, int to,
+			float curveTolerance, float simplifyTolerance) {
+		this.glyphs = glyphs;
+		this.results = results;
+		this.from = from;
+		this.to = to;
+		this.curveTolerance = curveTolerance;
+		this.simplifyTolerance = simplifyTolerance;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= THRESHOLD) {
+			FGlyphCompiler compiler = new FGlyphCompiler(curveTolerance, simplifyTolerance);
+			for (int i = from; i < to; i++) {
+				results[i] = compiler.compileIfChanged(glyphs.get(i));
+			}
+		} else {
+			int middle = (from + to) >>> 1;
+			invokeAll(
+					new FCompileTask(glyphs, results, from, middle, curveTolerance, simplifyTolerance),
+					new FCompileTask(glyphs, results, middle, to, curveTolerance, simplifyTolerance));
+		}
+	}
+
+}
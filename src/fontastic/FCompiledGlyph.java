@@ -0,0 +1,81 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Class FCompiledGlyph
+ *
+ * Stores a glyph compiled to a TrueType glyf record, together with the metrics
+ * needed for the hmtx, head, hhea and maxp tables.
+ *
+ */
+class FCompiledGlyph {
+
+	/** Unicode code point, -1 for glyphs that are not mapped to a character */
+	final int codePoint;
+	final int advanceWidth;
+
+	final int xMin;
+	final int yMin;
+	final int xMax;
+	final int yMax;
+
+	final int pointCount;
+	final int contourCount;
+
+	/** glyf record, empty for glyphs without contours */
+	final byte[] data;
+
+	/** Points and glyf bytes removed by FOutlineSimplifier */
+	final int pointsRemoved;
+	final int bytesSaved;
+
+	FCompiledGlyph(int codePoint, int advanceWidth, int xMin, int yMin, int xMax, int yMax,
+			int pointCount, int contourCount, byte[] data, int pointsRemoved, int bytesSaved) {
+		this.codePoint = codePoint;
+		this.advanceWidth = advanceWidth;
+		this.xMin = xMin;
+		this.yMin = yMin;
+		this.xMax = xMax;
+		this.yMax = yMax;
+		this.pointCount = pointCount;
+		this.contourCount = contourCount;
+		this.data = data;
+		this.pointsRemoved = pointsRemoved;
+		this.bytesSaved = bytesSaved;
+	}
+
+	boolean isEmpty() {
+		return contourCount == 0;
+	}
+
+	int getLeftSideBearing() {
+		return isEmpty() ? 0 : xMin;
+	}
+
+}
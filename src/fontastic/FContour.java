@@ -30,57 +30,427 @@ package fontastic;
 import processing.core.PVector;
 import fontastic.FPoint;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class FContour
  * 
- * Stores a contour (list of FPoint).
+ * Stores a contour (list of points). The coordinates and control points are
+ * stored in packed float arrays; FPoint objects are only created when they are
+ * requested with copyPoints(), getPoint() or the deprecated getPoints().
  * 
  */
 public class FContour {
 
-	List<FPoint> points;
+	static final byte CONTROL_POINT_1 = 1;
+	static final byte CONTROL_POINT_2 = 2;
+
+	/** Source of the version stamps of all glyphs and contours, see getVersion() */
+	private static final AtomicLong versions = new AtomicLong();
+
+	/** x and y of every point */
+	float[] coordinates;
+	/** x and y of controlPoint1 and controlPoint2 of every point, null as long as no point has a control point */
+	float[] controlPoints;
+	/** CONTROL_POINT_1 and CONTROL_POINT_2 bits of every point */
+	byte[] flags;
+	int pointCount;
+
+	private long version = nextVersion();
+	/** True for snapshots, see snapshot() */
+	private boolean frozen;
+	/** The last snapshot of the contour, reused as long as the contour has not changed */
+	private volatile FContour snapshot;
+	/** The glyph that created the contour and may change and reuse it, see FGlyph.setContourCount() */
+	FGlyph owner;
+	/** Points returned by getPoints(), written back to the arrays by sync() when they are changed */
+	private List<FPoint> livePoints;
 
 	FContour() {
-		this.points = new ArrayList<FPoint>();	
+		allocate(0);
 	}
 	
 	FContour(PVector[] points) {
-		this.points = new ArrayList<FPoint>();
+		allocate(points.length);
 		for (PVector p : points) {
-			this.points.add(new FPoint(p));
+			addPoint(p.x, p.y);
 		}
 	}
 	
 	FContour(PVector[] points, PVector[] controlpoints1, PVector[] controlpoints2) {
-		this.points = new ArrayList<FPoint>();
+		allocate(points.length);
 		for (int i=0; i<points.length; i++) {
-			this.points.add(new FPoint(points[i], controlpoints1[i], controlpoints2[i] ));
+			addPoint(points[i].x, points[i].y);
+			setControlPoints(i, controlpoints1[i], controlpoints2[i]);
 		}
 	}
 	
 	FContour(FPoint[] points) {
-		this.points = new ArrayList<FPoint>();
+		allocate(points.length);
 		for (int i=0; i<points.length; i++) {
-			this.points.add(points[i]);
+			addPoint(points[i]);
 		}
 	}
 	
+	/**
+	 * Returns the points of the contour. Changing the points or the list
+	 * changes the contour, until the contour is changed with addPoint() or
+	 * setPoints(), which makes a new list. Keeping the points in sync costs a
+	 * comparison of all points whenever the contour is read, use copyPoints()
+	 * and setPoints() instead.
+	 * 
+	 * @deprecated Points of a snapshot can't be changed, and the list will be
+	 *             a copy in a future version.
+	 */
+	@Deprecated
 	public List<FPoint> getPoints() {
-		return points;
+		if (frozen)
+			return Collections.unmodifiableList(Arrays.asList(copyPoints()));
+		sync();
+		if (livePoints == null) {
+			livePoints = new ArrayList<FPoint>(Arrays.asList(copyPoints()));
+			// the points can now change without changed(), see FGlyph.isWatched()
+			if (owner != null)
+				owner.contourChanged();
+		}
+		return livePoints;
 	}
 	
+	/**
+	 * Returns the points of getPoints() as an array.
+	 * 
+	 * @deprecated Use copyPoints()
+	 */
+	@Deprecated
 	public FPoint[] getPointsArray() {
-		FPoint[] pointsArray = points.toArray(new FPoint[points.size()]);
-		return pointsArray;
+		List<FPoint> points = getPoints();
+		return points.toArray(new FPoint[points.size()]);
+	}
+	
+	/**
+	 * Returns copies of the points of the contour, changing them does not
+	 * change the contour. Use setPoints() to change the contour.
+	 */
+	public FPoint[] copyPoints() {
+		sync();
+		FPoint[] points = new FPoint[pointCount];
+		for (int i=0; i<pointCount; i++) {
+			points[i] = newPoint(i);
+		}
+		return points;
+	}
+
+	/**
+	 * Returns a copy of the coordinates of the contour.
+	 * 
+	 * @return x and y of every point: x0, y0, x1, y1, ...
+	 */
+	public float[] copyCoordinates() {
+		sync();
+		return Arrays.copyOf(coordinates, 2 * pointCount);
+	}
+	
+	/**
+	 * Returns a copy of a point of the contour.
+	 */
+	public FPoint getPoint(int index) {
+		sync();
+		if (index < 0 || index >= pointCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pointCount);
+		return newPoint(index);
+	}
+
+	private FPoint newPoint(int index) {
+		FPoint point = new FPoint(coordinates[2 * index], coordinates[2 * index + 1]);
+		if ((flags[index] & CONTROL_POINT_1) != 0) {
+			point.setControlPoint1(controlPoints[4 * index], controlPoints[4 * index + 1]);
+		}
+		if ((flags[index] & CONTROL_POINT_2) != 0) {
+			point.setControlPoint2(controlPoints[4 * index + 2], controlPoints[4 * index + 3]);
+		}
+		return point;
+	}
+	
+	public int getPointCount() {
+		sync();
+		return pointCount;
 	}
 	
+	/**
+	 * Replaces the points of the contour. The storage of the contour is reused
+	 * and only grows if there are more points than before.
+	 */
 	public void setPoints(PVector[] points) {
-		this.points = new ArrayList<FPoint>();
+		clear(points.length);
 		for (PVector p : points) {
-			this.points.add(new FPoint(p));
+			addPoint(p.x, p.y);
+		}
+	}
+
+	/**
+	 * Replaces the points of the contour, including their control points. The
+	 * storage of the contour is reused and only grows if there are more points
+	 * than before.
+	 */
+	public void setPoints(FPoint[] points) {
+		clear(points.length);
+		for (FPoint p : points) {
+			addPoint(p);
+		}
+	}
+
+	/**
+	 * Replaces the points of the contour without creating any objects, e.g.
+	 * for animating a contour in draw(). The storage of the contour is reused
+	 * and only grows if there are more points than before.
+	 * 
+	 * @example contour.setPoints(new float[] { 0, 0, 0, 100, 100, 100 }, 3);
+	 * 
+	 * @param xy
+	 *            x and y of every point: x0, y0, x1, y1, ...
+	 * @param count
+	 *            Number of points
+	 */
+	public void setPoints(float[] xy, int count) {
+		setPoints(xy, null, null, count);
+	}
+
+	/**
+	 * Replaces the points and control points of the contour without creating
+	 * any objects. The storage of the contour is reused and only grows if there
+	 * are more points than before.
+	 * 
+	 * @param xy
+	 *            x and y of every point: x0, y0, x1, y1, ...
+	 * @param controlPoints1
+	 *            x and y of controlPoint1 of every point, or null
+	 * @param controlPoints2
+	 *            x and y of controlPoint2 of every point, or null
+	 * @param count
+	 *            Number of points
+	 */
+	public void setPoints(float[] xy, float[] controlPoints1, float[] controlPoints2, int count) {
+		clear(count);
+		System.arraycopy(xy, 0, coordinates, 0, 2 * count);
+		if (controlPoints1 != null || controlPoints2 != null) {
+			if (controlPoints == null) {
+				controlPoints = new float[2 * coordinates.length];
+			}
+			byte flag = (byte) ((controlPoints1 != null ? CONTROL_POINT_1 : 0) | (controlPoints2 != null ? CONTROL_POINT_2 : 0));
+			for (int i = 0; i < count; i++) {
+				if (controlPoints1 != null) {
+					controlPoints[4 * i] = controlPoints1[2 * i];
+					controlPoints[4 * i + 1] = controlPoints1[2 * i + 1];
+				}
+				if (controlPoints2 != null) {
+					controlPoints[4 * i + 2] = controlPoints2[2 * i];
+					controlPoints[4 * i + 3] = controlPoints2[2 * i + 1];
+				}
+				flags[i] = flag;
+			}
+		}
+		pointCount = count;
+	}
+
+	public void addPoint(float x, float y) {
+		changed();
+		ensureCapacity(pointCount + 1);
+		coordinates[2 * pointCount] = x;
+		coordinates[2 * pointCount + 1] = y;
+		flags[pointCount] = 0;
+		pointCount++;
+	}
+
+	public void addPoint(FPoint point) {
+		addPoint(point.x, point.y);
+		setControlPoints(pointCount - 1,
+				point.hasControlPoint1() ? point.controlPoint1 : null,
+				point.hasControlPoint2() ? point.controlPoint2 : null);
+	}
+
+	boolean hasControlPoint1(int index) {
+		return (flags[index] & CONTROL_POINT_1) != 0;
+	}
+
+	boolean hasControlPoint2(int index) {
+		return (flags[index] & CONTROL_POINT_2) != 0;
+	}
+
+	private void setControlPoints(int index, PVector controlPoint1, PVector controlPoint2) {
+		if (controlPoint1 == null && controlPoint2 == null)
+			return;
+		if (controlPoints == null) {
+			controlPoints = new float[2 * coordinates.length];
+		}
+		if (controlPoint1 != null) {
+			controlPoints[4 * index] = controlPoint1.x;
+			controlPoints[4 * index + 1] = controlPoint1.y;
+			flags[index] |= CONTROL_POINT_1;
+		}
+		if (controlPoint2 != null) {
+			controlPoints[4 * index + 2] = controlPoint2.x;
+			controlPoints[4 * index + 3] = controlPoint2.y;
+			flags[index] |= CONTROL_POINT_2;
+		}
+	}
+
+	/**
+	 * Removes all points and makes room for capacity points.
+	 */
+	void clear(int capacity) {
+		changed();
+		pointCount = 0;
+		ensureCapacity(capacity);
+		Arrays.fill(flags, 0, capacity, (byte) 0);
+	}
+
+	/**
+	 * Returns an immutable copy of the contour, which other threads can read
+	 * while this contour is changed. The points are only copied if the contour
+	 * has changed since the last snapshot, otherwise the last snapshot is
+	 * returned. A snapshot returns itself.
+	 */
+	public FContour snapshot() {
+		if (frozen)
+			return this;
+		sync();
+		FContour last = snapshot;
+		if (last != null && last.version == version)
+			return last;
+		FContour copy = new FContour();
+		copy.coordinates = Arrays.copyOf(coordinates, 2 * pointCount);
+		copy.controlPoints = controlPoints != null ? Arrays.copyOf(controlPoints, 4 * pointCount) : null;
+		copy.flags = Arrays.copyOf(flags, pointCount);
+		copy.pointCount = pointCount;
+		copy.version = version;
+		copy.frozen = true;
+		snapshot = copy;
+		return copy;
+	}
+
+	/**
+	 * Returns true if the contour is a snapshot, whose points can't be
+	 * changed.
+	 */
+	public boolean isSnapshot() {
+		return frozen;
+	}
+
+	/**
+	 * Returns a stamp that changes whenever the points of the contour are
+	 * changed. Stamps are unique over all contours and glyphs and only grow.
+	 */
+	long getVersion() {
+		sync();
+		return version;
+	}
+
+	/**
+	 * Adds the points and control points of the contour to a digest.
+	 */
+	void digest(MessageDigest digest) {
+		sync();
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 25 * pointCount);
+		buffer.putInt(pointCount);
+		for (int i = 0; i < pointCount; i++) {
+			buffer.putFloat(coordinates[2 * i]).putFloat(coordinates[2 * i + 1]);
+			buffer.put(flags[i]);
+			if (hasControlPoint1(i)) {
+				buffer.putFloat(controlPoints[4 * i]).putFloat(controlPoints[4 * i + 1]);
+			}
+			if (hasControlPoint2(i)) {
+				buffer.putFloat(controlPoints[4 * i + 2]).putFloat(controlPoints[4 * i + 3]);
+			}
+		}
+		digest.update(buffer.array(), 0, buffer.position());
+	}
+
+	private void changed() {
+		if (frozen)
+			throw new UnsupportedOperationException("A contour snapshot can't be changed");
+		if (livePoints != null) {
+			// keep changes to the points of getPoints(), then detach them
+			sync();
+			livePoints = null;
+		}
+		version = nextVersion();
+		if (owner != null)
+			owner.contourChanged();
+	}
+
+	/**
+	 * Writes the points returned by getPoints() back to the arrays if they
+	 * have been changed since. Called before the arrays are read.
+	 */
+	void sync() {
+		List<FPoint> points = livePoints;
+		if (points == null || matches(points))
+			return;
+		livePoints = null;
+		clear(points.size());
+		for (FPoint point : points) {
+			addPoint(point);
+		}
+		livePoints = points;
+	}
+
+	private boolean matches(List<FPoint> points) {
+		if (points.size() != pointCount)
+			return false;
+		for (int i = 0; i < pointCount; i++) {
+			FPoint point = points.get(i);
+			boolean cp1 = point.hasControlPoint1() && point.controlPoint1 != null;
+			boolean cp2 = point.hasControlPoint2() && point.controlPoint2 != null;
+			if (!same(point.x, coordinates[2 * i]) || !same(point.y, coordinates[2 * i + 1])
+					|| cp1 != hasControlPoint1(i) || cp2 != hasControlPoint2(i))
+				return false;
+			if (cp1 && (!same(point.controlPoint1.x, controlPoints[4 * i])
+					|| !same(point.controlPoint1.y, controlPoints[4 * i + 1])))
+				return false;
+			if (cp2 && (!same(point.controlPoint2.x, controlPoints[4 * i + 2])
+					|| !same(point.controlPoint2.y, controlPoints[4 * i + 3])))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean same(float a, float b) {
+		return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+	}
+
+	static long nextVersion() {
+		return versions.incrementAndGet();
+	}
+
+	/**
+	 * Returns true if points returned by getPoints() can change the contour
+	 * without a new version stamp until the next read.
+	 */
+	boolean hasLivePoints() {
+		return livePoints != null;
+	}
+
+	private void allocate(int capacity) {
+		coordinates = new float[2 * capacity];
+		controlPoints = null;
+		flags = new byte[capacity];
+		pointCount = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= flags.length)
+			return;
+		int newCapacity = Math.max(capacity, 2 * flags.length);
+		coordinates = Arrays.copyOf(coordinates, 2 * newCapacity);
+		flags = Arrays.copyOf(flags, newCapacity);
+		if (controlPoints != null) {
+			controlPoints = Arrays.copyOf(controlPoints, 4 * newCapacity);
 		}
 	}
 
@@ -0,0 +1,396 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.Arrays;
+
+/**
+ * Class FCubicConverter
+ *
+ * Converts the bezier segments of a FContour to quadratic curves as used by
+ * TrueType, within a maximum error in font units. Every cubic segment becomes
+ * a quadratic spline given by its off-curve points only: the on-curve points
+ * between two off-curve points are implied (they lie in the middle), so n
+ * quadratic segments need n points.
+ *
+ * Segments that are straight within the tolerance become lines. Other
+ * segments are approximated as in fontTools' cu2qu: the cubic is split into n
+ * equal parts, the control point of every part is placed between the
+ * extensions of its two tangents (cubic_approx_control), and the spline is
+ * accepted if every quadratic, elevated to a cubic, stays within the
+ * tolerance of its part. n is increased from 1 until the spline fits, so it is
+ * the smallest n for which this construction fits, not necessarily the
+ * fewest points any quadratic spline would need.
+ *
+ * With NO_TOLERANCE every bezier segment is split in two quadratic segments
+ * with an on-curve point in the middle, the conversion Fontastic used before.
+ *
+ * Contours with coordinates that are not finite (NaN or infinite) are
+ * rejected with an IllegalArgumentException.
+ *
+ * A converter reuses its point buffers between contours and is therefore not thread-safe.
+ *
+ */
+class FCubicConverter {
+
+	/** Maximum number of quadratic segments per cubic segment */
+	static final int MAX_SEGMENTS = 16;
+
+	/** Tolerance that splits every bezier segment in two, see setCurveTolerance() of Fontastic */
+	static final float NO_TOLERANCE = 0;
+
+	private double tolerance;
+
+	/** Converted contour: coordinates (x,y) and whether each point is on the curve */
+	float[] coordinates = new float[512];
+	boolean[] onCurve = new boolean[256];
+	int pointCount;
+
+	private float[] spline = new float[2 * MAX_SEGMENTS];
+
+	FCubicConverter(float tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Converts a contour. The result is in coordinates, onCurve and pointCount
+	 * until the next call. The first point is always on the curve.
+	 */
+	void convert(FContour contour) {
+		convert(contour, null);
+	}
+
+	/**
+	 * Converts a contour with a given number of quadratic segments per bezier
+	 * segment, so that the masters of a variable font get the same points.
+	 * 
+	 * @param segments
+	 *            Number of quadratic segments of the bezier segment from point
+	 *            i to the next, see countSegments(). Null to convert within
+	 *            the tolerance.
+	 */
+	void convert(FContour contour, int[] segments) {
+
+		pointCount = 0;
+
+		contour.sync();
+		checkFinite(contour);
+		int n = contour.pointCount;
+		float[] points = contour.coordinates;
+		float[] controlPoints = contour.controlPoints;
+
+		for (int i = 0; i < n; i++) {
+
+			int j = (i + 1) % n;
+			float x = points[2 * i], y = points[2 * i + 1];
+			float nextX = points[2 * j], nextY = points[2 * j + 1];
+
+			addPoint(x, y, true);
+
+			boolean hasCp1 = n > 1 && contour.hasControlPoint2(i);
+			boolean hasCp2 = n > 1 && contour.hasControlPoint1(j);
+
+			if (hasCp1 || hasCp2) {
+				float c1x = hasCp1 ? controlPoints[4 * i + 2] : x;
+				float c1y = hasCp1 ? controlPoints[4 * i + 3] : y;
+				float c2x = hasCp2 ? controlPoints[4 * j] : nextX;
+				float c2y = hasCp2 ? controlPoints[4 * j + 1] : nextY;
+				int count;
+				if (segments == null && tolerance == NO_TOLERANCE) {
+					splitInTwo(x, y, c1x, c1y, c2x, c2y, nextX, nextY);
+					continue;
+				} else if (segments == null) {
+					count = convert(x, y, c1x, c1y, c2x, c2y, nextX, nextY, tolerance, spline);
+				} else {
+					count = segments[i];
+					if (count > 0) {
+						convert(x, y, c1x, c1y, c2x, c2y, nextX, nextY, count, Double.MAX_VALUE, spline);
+					}
+				}
+				for (int k = 0; k < count; k++) {
+					addPoint(spline[2 * k], spline[2 * k + 1], false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Raises segments[i] to the number of quadratic segments the bezier
+	 * segment from point i to the next needs within the tolerance.
+	 */
+	void countSegments(FContour contour, int[] segments) {
+
+		contour.sync();
+		checkFinite(contour);
+		int n = contour.pointCount;
+		float[] points = contour.coordinates;
+		float[] controlPoints = contour.controlPoints;
+
+		for (int i = 0; i < n; i++) {
+
+			int j = (i + 1) % n;
+			boolean hasCp1 = n > 1 && contour.hasControlPoint2(i);
+			boolean hasCp2 = n > 1 && contour.hasControlPoint1(j);
+
+			if (hasCp1 || hasCp2) {
+				float x = points[2 * i], y = points[2 * i + 1];
+				float nextX = points[2 * j], nextY = points[2 * j + 1];
+				int count = tolerance == NO_TOLERANCE ? 2 : convert(x, y,
+						hasCp1 ? controlPoints[4 * i + 2] : x, hasCp1 ? controlPoints[4 * i + 3] : y,
+						hasCp2 ? controlPoints[4 * j] : nextX, hasCp2 ? controlPoints[4 * j + 1] : nextY,
+						nextX, nextY, tolerance, spline);
+				segments[i] = Math.max(segments[i], count);
+			}
+		}
+	}
+
+	/**
+	 * Adds the bezier segment from x0, y0 to x3, y3 as two quadratic segments,
+	 * split at t=0.5. The start point has already been added.
+	 */
+	private void splitInTwo(float x0, float y0, float x1, float y1, float x2,
+			float y2, float x3, float y3) {
+
+		float x01 = (x0 + x1) / 2, y01 = (y0 + y1) / 2;
+		float x12 = (x1 + x2) / 2, y12 = (y1 + y2) / 2;
+		float x23 = (x2 + x3) / 2, y23 = (y2 + y3) / 2;
+		float x012 = (x01 + x12) / 2, y012 = (y01 + y12) / 2;
+		float x123 = (x12 + x23) / 2, y123 = (y12 + y23) / 2;
+		float xm = (x012 + x123) / 2, ym = (y012 + y123) / 2;
+
+		addPoint((3 * x01 - x0 + 3 * x012 - xm) / 4, (3 * y01 - y0 + 3 * y012 - ym) / 4, false);
+		addPoint(xm, ym, true);
+		addPoint((3 * x123 - xm + 3 * x23 - x3) / 4, (3 * y123 - ym + 3 * y23 - y3) / 4, false);
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if a coordinate or control point of
+	 * the contour is NaN or infinite.
+	 */
+	private static void checkFinite(FContour contour) {
+		for (int i = 0; i < contour.pointCount; i++) {
+			boolean finite = isFinite(contour.coordinates[2 * i]) && isFinite(contour.coordinates[2 * i + 1]);
+			if (contour.hasControlPoint1(i)) {
+				finite &= isFinite(contour.controlPoints[4 * i]) && isFinite(contour.controlPoints[4 * i + 1]);
+			}
+			if (contour.hasControlPoint2(i)) {
+				finite &= isFinite(contour.controlPoints[4 * i + 2]) && isFinite(contour.controlPoints[4 * i + 3]);
+			}
+			if (!finite)
+				throw new IllegalArgumentException("Point " + i + " of a contour is not a finite number ("
+						+ contour.coordinates[2 * i] + ", " + contour.coordinates[2 * i + 1] + ")");
+		}
+	}
+
+	private static boolean isFinite(float f) {
+		return !Float.isNaN(f) && !Float.isInfinite(f);
+	}
+
+	private void addPoint(float x, float y, boolean on) {
+		if (pointCount == onCurve.length) {
+			coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+			onCurve = Arrays.copyOf(onCurve, onCurve.length * 2);
+		}
+		coordinates[2 * pointCount] = x;
+		coordinates[2 * pointCount + 1] = y;
+		onCurve[pointCount] = on;
+		pointCount++;
+	}
+
+	/**
+	 * Converts the cubic p0, p1, p2, p3.
+	 *
+	 * @param out
+	 *            Receives x and y of the off-curve points, must have room for
+	 *            2 * MAX_SEGMENTS values.
+	 *
+	 * @return The number of off-curve points, 0 if the segment is a straight
+	 *         line within the tolerance.
+	 */
+	static int convert(double x0, double y0, double x1, double y1, double x2,
+			double y2, double x3, double y3, double tolerance, float[] out) {
+
+		// straight line
+
+		if (fitsInside(0, 0, x1 - (2 * x0 + x3) / 3, y1 - (2 * y0 + y3) / 3,
+				x2 - (x0 + 2 * x3) / 3, y2 - (y0 + 2 * y3) / 3, 0, 0, tolerance)) {
+			return 0;
+		}
+
+		// one quadratic segment: control point at the intersection of the tangents
+
+		double dx1 = x1 - x0, dy1 = y1 - y0;
+		double dx2 = x2 - x3, dy2 = y2 - y3;
+		double cross = dx1 * dy2 - dy1 * dx2;
+		if (cross != 0) {
+			double t = ((x3 - x0) * dy2 - (y3 - y0) * dx2) / cross;
+			double qx = x0 + dx1 * t, qy = y0 + dy1 * t;
+			if (fitsQuadratic(x0, y0, qx, qy, x3, y3,
+					new double[] { x0, y0, x1, y1, x2, y2, x3, y3 }, tolerance)) {
+				out[0] = (float) qx;
+				out[1] = (float) qy;
+				return 1;
+			}
+		}
+
+		for (int n = 2; n <= MAX_SEGMENTS; n++) {
+			if (convert(x0, y0, x1, y1, x2, y2, x3, y3, n, tolerance, out)) {
+				return n;
+			}
+		}
+
+		convert(x0, y0, x1, y1, x2, y2, x3, y3, MAX_SEGMENTS, Double.MAX_VALUE, out);
+		return MAX_SEGMENTS;
+	}
+
+	/**
+	 * Tries to approximate the cubic with n quadratic segments.
+	 */
+	private static boolean convert(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x3, double y3, int n, double tolerance,
+			float[] out) {
+
+		// start of the current quadratic segment (on-curve)
+		double startX = x0, startY = y0;
+
+		for (int i = 0; i < n; i++) {
+
+			// part i of the cubic, from t0 to t1
+			double t0 = (double) i / n, t1 = (double) (i + 1) / n;
+			double[] part = split(x0, y0, x1, y1, x2, y2, x3, y3, t0, t1);
+
+			double qx = control(part, 0, i, n);
+			double qy = control(part, 1, i, n);
+			out[2 * i] = (float) qx;
+			out[2 * i + 1] = (float) qy;
+
+			// end of the quadratic segment: implied on-curve point or the end of the cubic
+			double endX, endY;
+			if (i < n - 1) {
+				double[] next = split(x0, y0, x1, y1, x2, y2, x3, y3, t1, (double) (i + 2) / n);
+				endX = (qx + control(next, 0, i + 1, n)) / 2;
+				endY = (qy + control(next, 1, i + 1, n)) / 2;
+			} else {
+				endX = x3;
+				endY = y3;
+			}
+
+			if (!fitsQuadratic(startX, startY, qx, qy, endX, endY, part, tolerance)) {
+				return false;
+			}
+
+			startX = endX;
+			startY = endY;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the quadratic control point of part i of n, as
+	 * cubic_approx_control() of cu2qu: the tangents at both ends are extended
+	 * by half their length, and the point moves from the end of the first
+	 * extension (i = 0) to the end of the second (i = n - 1).
+	 */
+	private static double control(double[] part, int axis, int i, int n) {
+		double t = n > 1 ? (double) i / (n - 1) : 0.5;
+		double c1 = part[axis] + (part[2 + axis] - part[axis]) * 1.5;
+		double c2 = part[6 + axis] + (part[4 + axis] - part[6 + axis]) * 1.5;
+		return c1 + (c2 - c1) * t;
+	}
+
+	/**
+	 * Checks whether the quadratic q0, q1, q2 is within the tolerance of the
+	 * cubic c0, c1, c2, c3 by elevating it to a cubic and comparing the two
+	 * point by point.
+	 */
+	private static boolean fitsQuadratic(double q0x, double q0y, double q1x,
+			double q1y, double q2x, double q2y, double[] cubic, double tolerance) {
+		double e0x = q0x - cubic[0], e0y = q0y - cubic[1];
+		double e1x = q0x + (q1x - q0x) * 2 / 3 - cubic[2];
+		double e1y = q0y + (q1y - q0y) * 2 / 3 - cubic[3];
+		double e2x = q2x + (q1x - q2x) * 2 / 3 - cubic[4];
+		double e2y = q2y + (q1y - q2y) * 2 / 3 - cubic[5];
+		double e3x = q2x - cubic[6], e3y = q2y - cubic[7];
+		return fitsInside(e0x, e0y, e1x, e1y, e2x, e2y, e3x, e3y, tolerance);
+	}
+
+	/**
+	 * Checks whether the cubic p0, p1, p2, p3 stays within the tolerance of the
+	 * origin, subdividing until the control points are close enough.
+	 */
+	private static boolean fitsInside(double x0, double y0, double x1,
+			double y1, double x2, double y2, double x3, double y3,
+			double tolerance) {
+
+		double t2 = tolerance * tolerance;
+		if (x1 * x1 + y1 * y1 <= t2 && x2 * x2 + y2 * y2 <= t2) {
+			return true;
+		}
+
+		double mx = (x0 + 3 * (x1 + x2) + x3) / 8;
+		double my = (y0 + 3 * (y1 + y2) + y3) / 8;
+		if (!(mx * mx + my * my <= t2)) {
+			// also stops on NaN, which would otherwise subdivide forever
+			return false;
+		}
+
+		double dx = (x3 + x2 - x1 - x0) / 8;
+		double dy = (y3 + y2 - y1 - y0) / 8;
+		return fitsInside(x0, y0, (x0 + x1) / 2, (y0 + y1) / 2, mx - dx, my - dy, mx, my, tolerance)
+				&& fitsInside(mx, my, mx + dx, my + dy, (x2 + x3) / 2, (y2 + y3) / 2, x3, y3, tolerance);
+	}
+
+	/**
+	 * Returns the part of the cubic between t0 and t1 as x0, y0, ..., x3, y3.
+	 */
+	private static double[] split(double x0, double y0, double x1, double y1,
+			double x2, double y2, double x3, double y3, double t0, double t1) {
+
+		double[] part = new double[8];
+		double[] ts = { t0, t1 };
+		// points at t0 and t1
+		for (int k = 0; k < 2; k++) {
+			double t = ts[k], u = 1 - t;
+			part[6 * k] = u * u * u * x0 + 3 * u * u * t * x1 + 3 * u * t * t * x2 + t * t * t * x3;
+			part[6 * k + 1] = u * u * u * y0 + 3 * u * u * t * y1 + 3 * u * t * t * y2 + t * t * t * y3;
+		}
+		// control points from the derivatives, scaled to the length of the part
+		double d = (t1 - t0) / 3;
+		part[2] = part[0] + d * derivative(x0, x1, x2, x3, t0);
+		part[3] = part[1] + d * derivative(y0, y1, y2, y3, t0);
+		part[4] = part[6] - d * derivative(x0, x1, x2, x3, t1);
+		part[5] = part[7] - d * derivative(y0, y1, y2, y3, t1);
+		return part;
+	}
+
+	private static double derivative(double p0, double p1, double p2, double p3, double t) {
+		double u = 1 - t;
+		return 3 * (u * u * (p1 - p0) + 2 * u * t * (p2 - p1) + t * t * (p3 - p2));
+	}
+
+}
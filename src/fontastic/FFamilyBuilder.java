@@ -0,0 +1,200 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class FFamilyBuilder
+ *
+ * Builds a family of fonts in one pass: variants with their own glyphs that
+ * start with the names, metrics and build settings of a base font. The tables
+ * that only depend on those (default glyphs, post, and cmap for variants with
+ * the same characters) are built once for all variants that still have the
+ * names and metrics of the base font. Variants whose names or metrics have
+ * been changed, e.g. with setSubFamily() or setAscender(), are built with
+ * their own.
+ *
+ * Every variant is compiled, written and converted to WOFF on a thread pool,
+ * and handed to a FFontSink as soon as it is done, so the files of a large
+ * family do not have to be kept in memory until the end.
+ *
+ * @example FFamilyBuilder family = new FFamilyBuilder(new Fontastic("MyFont"));
+ *          Fontastic bold = family.addVariant("MyFont-Bold");
+ *          bold.addGlyph('A').addContour(points);
+ *          family.build(FFamilyBuilder.directorySink(new File("fonts")), Fontastic.Format.WOFF);
+ *
+ */
+public class FFamilyBuilder {
+
+	private Fontastic family;
+	private List<Fontastic> variants = new ArrayList<Fontastic>();
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param family
+	 *            Font with the names, metrics and settings of the family. Its
+	 *            glyphs are not built.
+	 */
+	public FFamilyBuilder(Fontastic family) {
+		this.family = family;
+	}
+
+	/**
+	 * Adds a variant with the names, metrics and settings the family has at
+	 * this point, and without glyphs. The variant is an in-memory font, its
+	 * family name is fontname. Names and metrics set on the variant
+	 * afterwards are used for the variant only.
+	 * 
+	 * @return The variant, to add glyphs to.
+	 */
+	public Fontastic addVariant(String fontname) {
+		Fontastic variant = family.newVariant(fontname);
+		variants.add(variant);
+		return variant;
+	}
+
+	/**
+	 * Returns all variants in the order they were added.
+	 */
+	public List<Fontastic> getVariants() {
+		return Collections.unmodifiableList(variants);
+	}
+
+	/**
+	 * Sets the number of variants built at the same time. Default is the
+	 * number of processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Builds all variants and passes their files to the sink.
+	 * 
+	 * @param sink
+	 *            Receives the files
+	 * @param formats
+	 *            Formats to build, TTF and WOFF if none are given
+	 * 
+	 * @return true if all variants have been built and accepted by the sink.
+	 */
+	public boolean build(final FFontSink sink, Fontastic.Format... formats) {
+
+		final List<Fontastic.Format> formatList = formats.length > 0 ? Arrays.asList(formats)
+				: Arrays.asList(Fontastic.Format.TTF, Fontastic.Format.WOFF);
+
+		final FTrueTypeWriter writer;
+		try {
+			writer = new FTrueTypeWriter(family.getInfo().copy());
+		} catch (IOException e) {
+			System.out.println("Error while creating the tables of the family.");
+			e.printStackTrace();
+			return false;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism,
+				Math.max(1, variants.size())));
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		try {
+			for (final Fontastic variant : variants) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						FFontInfo info = variant.getInfo();
+						build(variant, info.sameTablesAs(writer.getInfo()) ? writer
+								: new FTrueTypeWriter(info.copy()), formatList, sink);
+						return null;
+					}
+				}));
+			}
+
+			boolean built = true;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					System.out.println("Error while building font "
+							+ variants.get(i).getFontname() + ".");
+					e.getCause().printStackTrace();
+					built = false;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return built;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void build(Fontastic variant, FTrueTypeWriter writer,
+			List<Fontastic.Format> formats, FFontSink sink) throws IOException {
+
+		byte[] ttfBytes = writer.write(variant.compileGlyphs(), variant.getInfo().fontFamilyName);
+		for (Fontastic.Format format : formats) {
+			byte[] bytes = Fontastic.convert(ttfBytes, format);
+			if (bytes == null)
+				throw new IOException(format + " file could not be created");
+			deliver(sink, variant.getFontname(), format, bytes);
+		}
+	}
+
+	private static void deliver(FFontSink sink, String fontname, Fontastic.Format format,
+			byte[] bytes) throws IOException {
+		synchronized (sink) {
+			sink.fontBuilt(fontname, format, bytes);
+		}
+	}
+
+	/**
+	 * Returns a sink that writes every file to directory, named after the
+	 * variant (e.g. MyFont-Bold.woff).
+	 */
+	public static FFontSink directorySink(final File directory) {
+		directory.mkdirs();
+		return new FFontSink() {
+			public void fontBuilt(String fontname, Fontastic.Format format, byte[] bytes)
+					throws IOException {
+				File file = new File(directory, fontname + "." + format.name().toLowerCase());
+				FOutputWriter.writeAtomically(file, bytes);
+			}
+		};
+	}
+
+}
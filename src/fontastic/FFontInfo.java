@@ -0,0 +1,172 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Calendar;
+
+import org.doubletype.ossa.OutOfRangeException;
+
+/**
+ * Class FFontInfo
+ *
+ * Stores the metadata and metrics of a font (names, version, vertical metrics).
+ * Defaults are the same as the ones of the doubletype typeface.
+ *
+ */
+class FFontInfo {
+
+	String fontFamilyName = "";
+	String subFamily = "Regular";
+	String version = "0.1";
+	String author = "";
+	String copyrightYear = String.valueOf(Calendar.getInstance().get(Calendar.YEAR));
+	String typefaceLicense;
+
+	float em = 1024;
+	float topSideBearing = 170;
+	float ascender = 683;
+	float xHeight = 424;
+	float descender = 171;
+	float bottomSideBearing = 0;
+	float baseline;
+	float meanline;
+
+	int advanceWidth = 512;
+
+	/** Creation time in seconds since 1970, fixed per font so that repeated builds are identical */
+	long created = System.currentTimeMillis() / 1000;
+
+	/**
+	 * Adds all names and metrics to a digest. The creation time is left out,
+	 * so fonts that only differ in it have the same digest.
+	 */
+	void digest(MessageDigest digest) {
+		for (String s : new String[] { fontFamilyName, subFamily, version, author,
+				copyrightYear, typefaceLicense }) {
+			byte[] bytes = s == null ? new byte[0] : s.getBytes(Charset.forName("UTF-8"));
+			digest.update(ByteBuffer.allocate(4).putInt(s == null ? -1 : bytes.length).array());
+			digest.update(bytes);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(40);
+		buffer.putFloat(em).putFloat(topSideBearing).putFloat(ascender).putFloat(xHeight)
+				.putFloat(descender).putFloat(bottomSideBearing).putFloat(baseline)
+				.putFloat(meanline).putInt(advanceWidth);
+		digest.update(buffer.array(), 0, buffer.position());
+	}
+
+	/**
+	 * Returns a copy with the same names, metrics and creation time.
+	 */
+	FFontInfo copy() {
+		FFontInfo copy = new FFontInfo();
+		copy.fontFamilyName = fontFamilyName;
+		copy.subFamily = subFamily;
+		copy.version = version;
+		copy.author = author;
+		copy.copyrightYear = copyrightYear;
+		copy.typefaceLicense = typefaceLicense;
+		copy.em = em;
+		copy.topSideBearing = topSideBearing;
+		copy.ascender = ascender;
+		copy.xHeight = xHeight;
+		copy.descender = descender;
+		copy.bottomSideBearing = bottomSideBearing;
+		copy.baseline = baseline;
+		copy.meanline = meanline;
+		copy.advanceWidth = advanceWidth;
+		copy.created = created;
+		return copy;
+	}
+
+	/**
+	 * Checks whether other has the same names, metrics and creation time,
+	 * apart from the family name, so fonts of both can share the tables of a
+	 * FTrueTypeWriter.
+	 */
+	boolean sameTablesAs(FFontInfo other) {
+		return equal(subFamily, other.subFamily) && equal(version, other.version)
+				&& equal(author, other.author) && equal(copyrightYear, other.copyrightYear)
+				&& equal(typefaceLicense, other.typefaceLicense) && em == other.em
+				&& topSideBearing == other.topSideBearing && ascender == other.ascender
+				&& xHeight == other.xHeight && descender == other.descender
+				&& bottomSideBearing == other.bottomSideBearing && baseline == other.baseline
+				&& meanline == other.meanline && advanceWidth == other.advanceWidth
+				&& created == other.created;
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	void setTopSideBearing(float topSideBearing) throws OutOfRangeException {
+		checkBoundary(topSideBearing);
+		this.topSideBearing = topSideBearing;
+	}
+
+	void setBottomSideBearing(float bottomSideBearing) throws OutOfRangeException {
+		checkBoundary(bottomSideBearing);
+		this.bottomSideBearing = bottomSideBearing;
+	}
+
+	void setAscender(float ascender) throws OutOfRangeException {
+		checkBoundary(ascender);
+		this.ascender = ascender;
+	}
+
+	void setDescender(float descender) throws OutOfRangeException {
+		checkBoundary(descender);
+		this.descender = descender;
+	}
+
+	void setXHeight(float xHeight) throws OutOfRangeException {
+		checkBoundary(xHeight);
+		if (xHeight > ascender)
+			throw new OutOfRangeException(xHeight);
+		this.xHeight = xHeight;
+	}
+
+	/**
+	 * Checks that a metric is within 0 and em, like doubletype does.
+	 */
+	private void checkBoundary(float value) throws OutOfRangeException {
+		if (value > em || value < 0)
+			throw new OutOfRangeException(value);
+	}
+
+	void setDefaultMetrics() {
+		topSideBearing = 170;
+		ascender = 683;
+		xHeight = 424;
+		descender = 171;
+		bottomSideBearing = 0;
+	}
+
+}
@@ -0,0 +1,60 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.IOException;
+
+/**
+ * Interface FFontSink
+ *
+ * Receives the font files built by FFamilyBuilder, one call per font and
+ * format as soon as the file is ready. Calls never overlap, so a sink does
+ * not need to be thread-safe, but they come from the threads of the builder.
+ *
+ * @example builder.build(new FFontSink() {
+ *              public void fontBuilt(String fontname, Fontastic.Format format, byte[] bytes) {
+ *                  zip.add(fontname + "." + format.name().toLowerCase(), bytes);
+ *              }
+ *          }, Fontastic.Format.WOFF);
+ *
+ */
+public interface FFontSink {
+
+	/**
+	 * Called for every built font file.
+	 * 
+	 * @param fontname
+	 *            Name of the variant
+	 * @param format
+	 *            Format of the file
+	 * @param bytes
+	 *            The font file
+	 */
+	void fontBuilt(String fontname, Fontastic.Format format, byte[] bytes) throws IOException;
+
+}
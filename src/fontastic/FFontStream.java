@@ -0,0 +1,264 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class FFontStream
+ *
+ * Builds a TTF file from glyphs that are added one at a time and never kept:
+ * every glyph is compiled as soon as the next one is added, its glyf record
+ * is written to a temporary file and the glyph can be garbage collected. Only
+ * a few numbers per glyph stay in memory, so fonts with tens of thousands of
+ * glyphs can be built with little heap. The font file is written by finish(),
+ * copying the glyf table from the temporary file. The temporary file is
+ * deleted by finish() or close(), so a stream that is given up must be
+ * closed.
+ *
+ * Unlike Fontastic.addGlyph(), adding a glyph for a code point that has been
+ * added before does not replace the old glyph; the character is mapped to the
+ * glyph added last.
+ *
+ * @example FFontStream stream = f.openStream();
+ *          for (int c = 0x4E00; c < 0x9FFF; c++) {
+ *              stream.addGlyph(c).addContour(outline(c));
+ *          }
+ *          stream.finish();
+ *
+ */
+public class FFontStream implements Closeable {
+
+	private FTrueTypeWriter writer;
+	private FGlyphCompiler compiler;
+	private String fontFamilyName;
+	private int advanceWidth;
+	private File file;
+
+	private File glyfFile;
+	private FileChannel glyf;
+	private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private int glyfChecksum;
+
+	private FTrueTypeWriter.FMetrics metrics = new FTrueTypeWriter.FMetrics();
+	private FGlyph pendingGlyph;
+	private boolean failed;
+	private boolean closed;
+
+	FFontStream(FFontInfo info, int advanceWidth, float curveTolerance, float simplifyTolerance,
+			File file) throws IOException {
+		this.writer = new FTrueTypeWriter(info);
+		this.compiler = new FGlyphCompiler(curveTolerance, simplifyTolerance);
+		this.fontFamilyName = info.fontFamilyName;
+		this.advanceWidth = advanceWidth;
+		this.file = file;
+
+		glyfFile = File.createTempFile("fontastic", ".glyf");
+		glyf = new RandomAccessFile(glyfFile, "rw").getChannel();
+
+		for (FCompiledGlyph glyph : writer.getDefaultGlyphs()) {
+			add(glyph);
+		}
+	}
+
+	/**
+	 * Adds a glyph by its Unicode code point. The glyph is compiled when the
+	 * next glyph is added or the font is finished, so it can only be changed
+	 * until then.
+	 * 
+	 * @return The glyph, to add contours to.
+	 */
+	public FGlyph addGlyph(int codePoint) {
+
+		if (!Character.isValidCodePoint(codePoint))
+			throw new IllegalArgumentException("Invalid code point: " + codePoint);
+
+		flushPendingGlyph();
+		pendingGlyph = new FGlyph(codePoint);
+		pendingGlyph.setAdvanceWidth(advanceWidth);
+		return pendingGlyph;
+	}
+
+	/**
+	 * Adds a glyph by its character.
+	 * 
+	 * @return The glyph, to add contours to.
+	 */
+	public FGlyph addGlyph(char c) {
+		return addGlyph((int) c);
+	}
+
+	/**
+	 * Adds a glyph and its contours.
+	 * 
+	 * @return The glyph.
+	 */
+	public FGlyph addGlyph(int codePoint, FContour[] contours) {
+		FGlyph glyph = addGlyph(codePoint);
+		for (FContour contour : contours) {
+			glyph.addContour(contour);
+		}
+		return glyph;
+	}
+
+	/**
+	 * Adds a glyph that has been built elsewhere, e.g. by another Fontastic
+	 * object. It is compiled right away.
+	 */
+	public void addGlyph(FGlyph glyph) {
+		flushPendingGlyph();
+		add(compiler.compile(glyph));
+	}
+
+	/**
+	 * Returns the number of glyphs added so far, without the default glyphs.
+	 */
+	public int getGlyphCount() {
+		return metrics.numGlyphs - writer.getDefaultGlyphs().size() + (pendingGlyph != null ? 1 : 0);
+	}
+
+	/**
+	 * Compiles the last glyph and writes the font file. The stream is closed
+	 * afterwards.
+	 * 
+	 * @return true if the font file has been written.
+	 */
+	public boolean finish() {
+
+		if (closed)
+			throw new IllegalStateException("The font stream is closed");
+
+		flushPendingGlyph();
+		try {
+			if (!failed) {
+				flushBuffer();
+				metrics.finish();
+				// written next to file and renamed, so file is never half written
+				File temp = FOutputWriter.createTempFile(file);
+				try {
+					FileChannel out = new FileOutputStream(temp).getChannel();
+					try {
+						writer.write(metrics, glyf, glyfChecksum, fontFamilyName, out);
+					} finally {
+						out.close();
+					}
+					FOutputWriter.moveAtomically(temp, file);
+				} finally {
+					temp.delete();
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Error while writing the font file " + file);
+			e.printStackTrace();
+			failed = true;
+		}
+		close();
+		return !failed;
+	}
+
+	/**
+	 * Returns the TTF file the font is written to.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Deletes the temporary file. Called by finish(), or to give up a font.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		pendingGlyph = null;
+		try {
+			glyf.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		glyfFile.delete();
+	}
+
+	private void flushPendingGlyph() {
+		if (closed)
+			throw new IllegalStateException("The font stream is closed");
+		if (pendingGlyph != null) {
+			FGlyph glyph = pendingGlyph;
+			pendingGlyph = null;
+			add(compiler.compile(glyph));
+		}
+	}
+
+	/**
+	 * Appends the glyf record of a compiled glyph to the temporary file.
+	 */
+	private void add(FCompiledGlyph glyph) {
+
+		if (failed)
+			return;
+		if (metrics.numGlyphs == FTrueTypeWriter.MAX_GLYPHS)
+			throw new IllegalStateException("A font can have at most "
+					+ FTrueTypeWriter.MAX_GLYPHS + " glyphs");
+
+		metrics.add(glyph);
+		glyfChecksum += FTrueTypeWriter.checksum(glyph.data, 0, glyph.data.length);
+		int padding = FTrueTypeWriter.pad4(glyph.data.length) - glyph.data.length;
+
+		try {
+			if (buffer.remaining() < glyph.data.length + padding) {
+				flushBuffer();
+			}
+			if (buffer.remaining() < glyph.data.length + padding) {
+				glyf.write(ByteBuffer.wrap(glyph.data));
+				glyf.write(ByteBuffer.allocate(padding));
+			} else {
+				buffer.put(glyph.data);
+				buffer.put(new byte[padding]);
+			}
+		} catch (IOException e) {
+			System.out.println("Error while writing the glyphs to " + glyfFile);
+			e.printStackTrace();
+			failed = true;
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			glyf.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
@@ -31,7 +31,11 @@ import processing.core.PVector;
 import fontastic.FContour;
 import fontastic.FPoint;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -42,49 +46,114 @@ import java.util.List;
  */
 public class FGlyph {
 
-	private char glyphChar;
+	private int codePoint;
 	private List<FContour> contours;
+	private List<FContour> spareContours = new ArrayList<FContour>();
 	private int advanceWidth = 512;
 
-	FGlyph(char c) {
-		glyphChar = c;
+	private long version = FContour.nextVersion();
+	/** The contours and their versions when version was last checked, see getVersion() */
+	private FContour[] versionContours = new FContour[0];
+	private long[] contourVersions = new long[0];
+	/** True for snapshots, see snapshot() */
+	private final boolean frozen;
+	/** The last snapshot of the glyph, reused as long as the glyph has not changed */
+	private volatile FGlyph snapshot;
+	/** The store the glyph is in, which is told about its changes, see FGlyphStore.snapshot() */
+	FGlyphStore store;
+
+	/**
+	 * The compiled form and digest together with the version they were made
+	 * of, in one object each, so a build thread reading them never sees a
+	 * value with the version of another.
+	 */
+	private volatile Stamped<FCompiledGlyph> compiled;
+	private volatile Stamped<byte[]> digest;
+
+	FGlyph(int codePoint) {
+		this.codePoint = codePoint;
 		this.contours = new ArrayList<FContour>();
+		this.frozen = false;
+	}
+
+	/**
+	 * Creates a snapshot of glyph, see snapshot().
+	 */
+	private FGlyph(FGlyph glyph, long version) {
+		this.codePoint = glyph.codePoint;
+		this.advanceWidth = glyph.advanceWidth;
+		List<FContour> contours = new ArrayList<FContour>(glyph.contours.size());
+		for (int i = 0; i < glyph.contours.size(); i++) {
+			contours.add(glyph.contours.get(i).snapshot());
+		}
+		this.contours = Collections.unmodifiableList(contours);
+		this.version = version;
+		this.frozen = true;
+		this.compiled = glyph.compiled;
+		this.digest = glyph.digest;
 	}
 
 	public void addContour() {
-		contours.add(new FContour());
+		changed();
+		contours.add(own(new FContour()));
 	}
 	
 	public void addContour(PVector[] points) {
-		contours.add(new FContour(points));
+		changed();
+		contours.add(own(new FContour(points)));
 	}
 	
 	public void addContour(FPoint[] points) {
-		contours.add(new FContour(points));
+		changed();
+		contours.add(own(new FContour(points)));
 	}
 
 	public void addContour(PVector[] points, PVector[] controlPoints1, PVector[] controlPoints2) {
-		contours.add(new FContour(points, controlPoints1, controlPoints2));
+		changed();
+		contours.add(own(new FContour(points, controlPoints1, controlPoints2)));
 	}
 	
+	/**
+	 * Adds a contour. The contour can be shared with other glyphs, it is never
+	 * changed or reused by the glyph.
+	 */
 	public void addContour(FContour contour) {
+		changed();
+		share(contour);
 		contours.add(contour);
 	}
 
 	public void setAdvanceWidth(int advanceWidth) {
+		changed();
 		this.advanceWidth = advanceWidth;
 	}
 	
+	/**
+	 * Returns the character of the glyph. For characters outside the Basic
+	 * Multilingual Plane (e.g. emoji) this is the high surrogate, use
+	 * getCodePoint() instead.
+	 */
 	public char getGlyphChar() {
-		return glyphChar;
+		return Character.isBmpCodePoint(codePoint) ? (char) codePoint : Character.highSurrogate(codePoint);
+	}
+
+	/**
+	 * Returns the Unicode code point of the glyph.
+	 */
+	public int getCodePoint() {
+		return codePoint;
 	}
 	
 	public int getAdvanceWidth() {
 		return advanceWidth;
 	}
 	
+	/**
+	 * Returns the contours of the glyph. The list can't be changed, use
+	 * addContour(), setContour() and clearContours() instead.
+	 */
 	public List<FContour> getContours() {
-		return contours;
+		return Collections.unmodifiableList(contours);
 	}
 
 	public FContour[] getContoursArray() {
@@ -101,19 +170,271 @@ public class FGlyph {
 	}
 	
 	public void setContour(int index, PVector[] points) {
-		contours.set(index, new FContour(points));		
+		changed();
+		contours.set(index, own(new FContour(points)));
 	}
 
 	public void setContour(int index, FPoint[] points) {
-		contours.set(index, new FContour(points));		
+		changed();
+		contours.set(index, own(new FContour(points)));
 	}
 
+	/**
+	 * Replaces a contour. The contour can be shared with other glyphs, it is
+	 * never changed or reused by the glyph.
+	 */
 	public void setContour(int index, FContour contour) {
+		changed();
+		share(contour);
 		contours.set(index, contour);
 	}
-	
+
+	/**
+	 * Replaces the points of a contour without creating any objects, e.g. for
+	 * animating a glyph in draw(). If index equals getContourCount(), a contour
+	 * is added. Contours the glyph has created are changed in place, so
+	 * contours returned by getContour() change too; contours passed to
+	 * addContour(FContour) or setContour(int, FContour) are replaced by a new
+	 * contour once.
+	 * 
+	 * @param xy
+	 *            x and y of every point: x0, y0, x1, y1, ...
+	 * @param count
+	 *            Number of points
+	 */
+	public void setContour(int index, float[] xy, int count) {
+		setContour(index, xy, null, null, count);
+	}
+
+	/**
+	 * Replaces the points and control points of a contour without creating any
+	 * objects, see setContour(int, float[], int).
+	 * 
+	 * @param xy
+	 *            x and y of every point: x0, y0, x1, y1, ...
+	 * @param controlPoints1
+	 *            x and y of controlPoint1 of every point, or null
+	 * @param controlPoints2
+	 *            x and y of controlPoint2 of every point, or null
+	 * @param count
+	 *            Number of points
+	 */
+	public void setContour(int index, float[] xy, float[] controlPoints1, float[] controlPoints2, int count) {
+		if (index == contours.size()) {
+			setContourCount(index + 1);
+		}
+		FContour contour = contours.get(index);
+		if (contour.owner != this) {
+			changed();
+			contour = own(new FContour());
+			contours.set(index, contour);
+		}
+		contour.setPoints(xy, controlPoints1, controlPoints2, count);
+	}
+
+	/**
+	 * Sets the number of contours. Removed contours that the glyph has created
+	 * are kept and reused when the number of contours grows again, so a glyph
+	 * whose number of contours changes every frame does not create new
+	 * contours. Contours passed to addContour(FContour) are never reused.
+	 */
+	public void setContourCount(int count) {
+		if (count != contours.size())
+			changed();
+		while (contours.size() > count) {
+			FContour contour = contours.remove(contours.size() - 1);
+			if (contour.owner == this)
+				spareContours.add(contour);
+		}
+		while (contours.size() < count) {
+			FContour contour = spareContours.isEmpty() ? own(new FContour())
+					: spareContours.remove(spareContours.size() - 1);
+			contour.clear(0);
+			contours.add(contour);
+		}
+	}
+
 	public void clearContours() {
+		changed();
 		this.contours.clear();
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Returns a stamp that changes whenever the glyph is changed: its advance
+	 * width, the number of contours, which contours it has, or the points of
+	 * one of them. The contours and their versions are compared with the ones
+	 * of the last call, so no change is missed, whichever way it was made.
+	 */
+	long getVersion() {
+		if (frozen)
+			return version;
+		int n = contours.size();
+		boolean same = n == versionContours.length;
+		for (int i = 0; i < n && same; i++) {
+			FContour contour = contours.get(i);
+			same = contour == versionContours[i] && contour.getVersion() == contourVersions[i];
+		}
+		if (!same) {
+			versionContours = contours.toArray(new FContour[n]);
+			contourVersions = new long[n];
+			for (int i = 0; i < n; i++) {
+				contourVersions[i] = versionContours[i].getVersion();
+			}
+			version = FContour.nextVersion();
+		}
+		return version;
+	}
+
+	/**
+	 * Returns an immutable copy of the glyph, which other threads can read
+	 * while this glyph is changed, e.g. to build the font in the background.
+	 * Checking whether the glyph has changed only compares version stamps, and
+	 * only contours that have changed since the last snapshot are copied;
+	 * unchanged glyphs return their last snapshot. A snapshot returns itself.
+	 * 
+	 * @return The snapshot, whose add and set methods throw an
+	 *         UnsupportedOperationException.
+	 */
+	public FGlyph snapshot() {
+		if (frozen)
+			return this;
+		long v = getVersion();
+		FGlyph last = snapshot;
+		if (last != null && last.version == v)
+			return last;
+		last = new FGlyph(this, v);
+		snapshot = last;
+		return last;
+	}
+
+	/**
+	 * Returns true if the glyph is a snapshot, which can't be changed.
+	 */
+	public boolean isSnapshot() {
+		return frozen;
+	}
+
+	/**
+	 * Returns the compiled form of the glyph from the last build, or null if
+	 * the glyph has changed since. Glyphs compiled by a build of a snapshot
+	 * are found too.
+	 */
+	FCompiledGlyph getCompiledGlyph() {
+		long v = getVersion();
+		Stamped<FCompiledGlyph> c = compiled;
+		if (c != null && c.version == v)
+			return c.value;
+		FGlyph last = snapshot;
+		if (last != null && last.version == v)
+			return last.getCompiledGlyph();
+		return null;
+	}
+
+	/**
+	 * Keeps the compiled form of the glyph. Null compiles the glyph again in
+	 * the next build and forgets the last snapshot, which a running build may
+	 * still compile with the old settings.
+	 * 
+	 * @param version
+	 *            The version of the glyph before it was compiled.
+	 */
+	void setCompiledGlyph(FCompiledGlyph compiledGlyph, long version) {
+		if (compiledGlyph != null) {
+			compiled = new Stamped<FCompiledGlyph>(compiledGlyph, version);
+		} else {
+			compiled = null;
+			if (!frozen)
+				snapshot = null;
+		}
+	}
+
+	/**
+	 * Returns a SHA-256 digest of the code point, advance width and outlines
+	 * of the glyph. It is only computed again after the glyph has changed.
+	 */
+	byte[] getDigest() {
+		long v = getVersion();
+		Stamped<byte[]> d = digest;
+		if (d == null || d.version != v) {
+			MessageDigest md;
+			try {
+				md = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			md.update(ByteBuffer.allocate(12).putInt(codePoint).putInt(advanceWidth)
+					.putInt(contours.size()).array());
+			for (FContour contour : contours) {
+				contour.digest(md);
+			}
+			d = new Stamped<byte[]>(md.digest(), v);
+			digest = d;
+		}
+		return d.value;
+	}
+
+	/**
+	 * Marks a contour as created by this glyph, so it may change and reuse it.
+	 */
+	private FContour own(FContour contour) {
+		contour.owner = this;
+		return contour;
+	}
+
+	/**
+	 * Marks a contour as shared. The glyph that created it is told, as it no
+	 * longer hears about changes of the contour, see isWatched().
+	 */
+	private void share(FContour contour) {
+		FGlyph owner = contour.owner;
+		contour.owner = null;
+		if (owner != null && owner != this)
+			owner.contourChanged();
+	}
+
+	/**
+	 * Returns true if the glyph can change without telling its store: it has
+	 * a contour it has not created, which can be changed through another
+	 * glyph or directly, or a contour whose points from getPoints() are live.
+	 */
+	boolean isWatched() {
+		for (int i = 0; i < contours.size(); i++) {
+			FContour contour = contours.get(i);
+			if (contour.owner != this || contour.hasLivePoints())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called by the contours the glyph has created when they change.
+	 */
+	void contourChanged() {
+		if (store != null)
+			store.changed(this);
+	}
+
+	private void changed() {
+		if (frozen)
+			throw new UnsupportedOperationException("A glyph snapshot can't be changed");
+		version = FContour.nextVersion();
+		if (store != null)
+			store.changed(this);
+	}
+
+	/**
+	 * A value and the version of the glyph it belongs to.
+	 */
+	private static class Stamped<T> {
+
+		final T value;
+		final long version;
+
+		Stamped(T value, long version) {
+			this.value = value;
+			this.version = version;
+		}
+
+	}
+
+}
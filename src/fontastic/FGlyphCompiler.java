@@ -0,0 +1,520 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class FGlyphCompiler
+ *
+ * Compiles a FGlyph into a TrueType glyf record. Bezier segments (given by the
+ * control points of FPoint) are converted to quadratic curves by
+ * FCubicConverter, on-curve points implied by their neighbours are left out.
+ *
+ * A compiler reuses its point buffers between glyphs and is therefore not thread-safe.
+ *
+ */
+class FGlyphCompiler {
+
+	private static final int ON_CURVE = 0x01;
+	private static final int X_SHORT = 0x02;
+	private static final int Y_SHORT = 0x04;
+	private static final int REPEAT = 0x08;
+	private static final int X_SAME_OR_POSITIVE = 0x10;
+	private static final int Y_SAME_OR_POSITIVE = 0x20;
+
+	/** Points of the loaded glyph in font units, see load() */
+	int[] xs = new int[256];
+	int[] ys = new int[256];
+	boolean[] onCurve = new boolean[256];
+	int pointCount;
+
+	/** Index of the last point of every contour */
+	int[] endPoints = new int[16];
+	int contourCount;
+
+	private FCubicConverter converter;
+	private FOutlineSimplifier simplifier;
+
+	private byte[] flags = new byte[256];
+	private int pointsRemoved;
+	private int bytesSaved;
+
+	FGlyphCompiler() {
+		this(FCubicConverter.NO_TOLERANCE, 0);
+	}
+
+	/**
+	 * @param curveTolerance
+	 *            Maximum distance in font units between a bezier segment and
+	 *            its quadratic approximation, FCubicConverter.NO_TOLERANCE to
+	 *            split every bezier segment in two.
+	 * @param simplifyTolerance
+	 *            Maximum distance in font units of the points removed by
+	 *            FOutlineSimplifier, 0 to keep all points.
+	 */
+	FGlyphCompiler(float curveTolerance, float simplifyTolerance) {
+		converter = new FCubicConverter(curveTolerance);
+		if (simplifyTolerance > 0) {
+			simplifier = new FOutlineSimplifier(simplifyTolerance);
+		}
+	}
+
+	FCompiledGlyph compile(FGlyph glyph) {
+		load(glyph);
+		return encode(glyph.getCodePoint(), glyph.getAdvanceWidth());
+	}
+
+	/**
+	 * Returns the compiled glyph from the last build if the glyph has not
+	 * changed since, otherwise compiles it and keeps the result on the glyph.
+	 */
+	FCompiledGlyph compileIfChanged(FGlyph glyph) {
+		FCompiledGlyph compiledGlyph = glyph.getCompiledGlyph();
+		if (compiledGlyph == null) {
+			long version = glyph.getVersion();
+			compiledGlyph = compile(glyph);
+			glyph.setCompiledGlyph(compiledGlyph, version);
+		}
+		return compiledGlyph;
+	}
+
+	/**
+	 * Converts the contours of a glyph to quadratic TrueType points in font
+	 * units, stored in xs, ys, onCurve and endPoints until the next call.
+	 */
+	void load(FGlyph glyph) {
+
+		pointCount = 0;
+		contourCount = 0;
+
+		for (FContour contour : glyph.getContours()) {
+			int start = pointCount;
+			addContour(contour);
+			if (pointCount > start) {
+				if (contourCount == endPoints.length) {
+					endPoints = grow(endPoints);
+				}
+				endPoints[contourCount++] = pointCount - 1;
+			}
+		}
+
+		pointsRemoved = 0;
+		bytesSaved = 0;
+		if (simplifier != null) {
+			simplify();
+		}
+	}
+
+	/**
+	 * Compiles the masters of a glyph of a variable font. All masters get the
+	 * same points: every bezier segment is converted with the number of
+	 * quadratic segments of the master that needs the most, and on-curve
+	 * points are only left out if they are implied in all masters. The
+	 * outlines are not simplified.
+	 * 
+	 * @param masters
+	 *            The glyph in every master, the default master first. Null for
+	 *            masters that do not have the glyph.
+	 * @param points
+	 *            Receives the coordinates x0, y0, x1, y1, ... of every master,
+	 *            followed by the four phantom points (origin and advance
+	 *            width). Null for masters that do not have the glyph.
+	 * 
+	 * @return The compiled glyph of the default master.
+	 */
+	FCompiledGlyph compileMasters(FGlyph[] masters, int[][] points) {
+
+		FGlyph glyph = masters[0];
+		List<FContour> contours = glyph.getContours();
+		for (int m = 1; m < masters.length; m++) {
+			if (masters[m] != null && !compatible(glyph, masters[m]))
+				throw new IllegalArgumentException("The masters of glyph "
+						+ new String(Character.toChars(glyph.getCodePoint()))
+						+ " do not have the same contours and points");
+		}
+
+		int[][] segments = new int[contours.size()][];
+		for (int c = 0; c < segments.length; c++) {
+			segments[c] = new int[contours.get(c).getPointCount()];
+			for (FGlyph master : masters) {
+				if (master != null) {
+					converter.countSegments(master.getContour(c), segments[c]);
+				}
+			}
+		}
+
+		// the points of every master, before leaving out implied points
+		int[][] masterXs = new int[masters.length][];
+		int[][] masterYs = new int[masters.length][];
+		for (int m = masters.length - 1; m >= 0; m--) {
+			if (masters[m] == null)
+				continue;
+			pointCount = 0;
+			contourCount = 0;
+			for (int c = 0; c < segments.length; c++) {
+				converter.convert(masters[m].getContour(c), segments[c]);
+				float[] coordinates = converter.coordinates;
+				for (int i = 0; i < converter.pointCount; i++) {
+					addPoint(coordinates[2 * i], coordinates[2 * i + 1], converter.onCurve[i]);
+				}
+				if (converter.pointCount == 0)
+					continue;
+				if (contourCount == endPoints.length) {
+					endPoints = grow(endPoints);
+				}
+				endPoints[contourCount++] = pointCount - 1;
+			}
+			masterXs[m] = Arrays.copyOf(xs, pointCount);
+			masterYs[m] = Arrays.copyOf(ys, pointCount);
+		}
+
+		// leave out the points implied in all masters
+		boolean[] keep = new boolean[pointCount];
+		int kept = 0;
+		int start = 0;
+		for (int c = 0; c < contourCount; c++) {
+			int end = endPoints[c] + 1;
+			for (int i = start; i < end; i++) {
+				int previous = i - 1;
+				int next = i + 1 < end ? i + 1 : start;
+				boolean implied = end - start >= 3 && i > start && onCurve[i]
+						&& !onCurve[previous] && !onCurve[next];
+				for (int m = 0; implied && m < masters.length; m++) {
+					implied = masterXs[m] == null
+							|| (masterXs[m][previous] + masterXs[m][next] == 2 * masterXs[m][i]
+							&& masterYs[m][previous] + masterYs[m][next] == 2 * masterYs[m][i]);
+				}
+				keep[i] = !implied;
+				if (!implied) {
+					kept++;
+				}
+			}
+			endPoints[c] = kept - 1;
+			start = end;
+		}
+		int allPoints = pointCount;
+		pointCount = 0;
+		for (int i = 0; i < allPoints; i++) {
+			if (keep[i]) {
+				onCurve[pointCount++] = onCurve[i];
+			}
+		}
+
+		for (int m = 0; m < masters.length; m++) {
+			if (masterXs[m] == null)
+				continue;
+			int[] p = new int[2 * pointCount + 8];
+			int k = 0;
+			for (int i = 0; i < allPoints; i++) {
+				if (keep[i]) {
+					p[2 * k] = masterXs[m][i];
+					p[2 * k + 1] = masterYs[m][i];
+					k++;
+				}
+			}
+			p[2 * pointCount + 2] = masters[m].getAdvanceWidth();
+			points[m] = p;
+		}
+
+		for (int i = 0; i < pointCount; i++) {
+			xs[i] = points[0][2 * i];
+			ys[i] = points[0][2 * i + 1];
+		}
+		pointsRemoved = 0;
+		bytesSaved = 0;
+		return encode(glyph.getCodePoint(), glyph.getAdvanceWidth());
+	}
+
+	/**
+	 * Checks whether two glyphs have the same number of contours, points and
+	 * control points, so that they can be masters of a variable font.
+	 */
+	private static boolean compatible(FGlyph a, FGlyph b) {
+		if (a.getContourCount() != b.getContourCount())
+			return false;
+		for (int c = 0; c < a.getContourCount(); c++) {
+			FContour ca = a.getContour(c), cb = b.getContour(c);
+			if (ca.getPointCount() != cb.getPointCount())
+				return false;
+			for (int i = 0; i < ca.pointCount; i++) {
+				if (ca.hasControlPoint1(i) != cb.hasControlPoint1(i)
+						|| ca.hasControlPoint2(i) != cb.hasControlPoint2(i))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/** Points removed by the simplifier from the last glyph */
+	int getPointsRemoved() {
+		return pointsRemoved;
+	}
+
+	/** Bytes of the glyf record saved by the simplifier for the last glyph */
+	int getBytesSaved() {
+		return bytesSaved;
+	}
+
+	/**
+	 * Runs the simplifier over all contours and counts the points and bytes
+	 * of the glyf record it saved.
+	 */
+	private void simplify() {
+
+		int pointsBefore = pointCount;
+		int sizeBefore = layout();
+
+		int from = 0;
+		int to = 0;
+		int contours = 0;
+		for (int c = 0; c < contourCount; c++) {
+			int end = endPoints[c] + 1;
+			int written = simplifier.simplify(xs, ys, onCurve, from, end - from, to);
+			from = end;
+			if (written > 0) {
+				to += written;
+				endPoints[contours++] = to - 1;
+			}
+		}
+		pointCount = to;
+		contourCount = contours;
+
+		pointsRemoved = pointsBefore - pointCount;
+		bytesSaved = sizeBefore - layout();
+	}
+
+	private void addContour(FContour contour) {
+
+		converter.convert(contour);
+
+		int start = pointCount;
+		float[] coordinates = converter.coordinates;
+		for (int i = 0; i < converter.pointCount; i++) {
+			addPoint(coordinates[2 * i], coordinates[2 * i + 1], converter.onCurve[i]);
+		}
+
+		removeImpliedPoints(start);
+	}
+
+	/**
+	 * Removes the on-curve points (except the first) of the contour starting
+	 * at start that lie exactly in the middle of two off-curve points after
+	 * rounding, as TrueType implies them.
+	 */
+	private void removeImpliedPoints(int start) {
+
+		int end = pointCount;
+		if (end - start < 3) {
+			return;
+		}
+		int kept = start + 1;
+
+		for (int i = start + 1; i < end; i++) {
+			int previous = kept - 1;
+			int next = i + 1 < end ? i + 1 : start;
+			boolean implied = onCurve[i] && !onCurve[previous] && !onCurve[next]
+					&& xs[previous] + xs[next] == 2 * xs[i]
+					&& ys[previous] + ys[next] == 2 * ys[i];
+			if (!implied) {
+				xs[kept] = xs[i];
+				ys[kept] = ys[i];
+				onCurve[kept] = onCurve[i];
+				kept++;
+			}
+		}
+
+		pointCount = kept;
+	}
+
+	private void addPoint(float x, float y, boolean on) {
+		if (pointCount == xs.length) {
+			xs = grow(xs);
+			ys = grow(ys);
+			boolean[] newOnCurve = new boolean[onCurve.length * 2];
+			System.arraycopy(onCurve, 0, newOnCurve, 0, onCurve.length);
+			onCurve = newOnCurve;
+		}
+		xs[pointCount] = toFUnit(x);
+		ys[pointCount] = toFUnit(y);
+		onCurve[pointCount] = on;
+		pointCount++;
+	}
+
+	private FCompiledGlyph encode(int codePoint, int advanceWidth) {
+
+		if (contourCount == 0) {
+			return new FCompiledGlyph(codePoint, advanceWidth, 0, 0, 0, 0, 0, 0, new byte[0],
+					pointsRemoved, bytesSaved);
+		}
+
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+		for (int i = 0; i < pointCount; i++) {
+			xMin = Math.min(xMin, xs[i]);
+			yMin = Math.min(yMin, ys[i]);
+			xMax = Math.max(xMax, xs[i]);
+			yMax = Math.max(yMax, ys[i]);
+		}
+
+		byte[] data = new byte[layout()];
+		int pos = 0;
+
+		pos = writeShort(data, pos, contourCount);
+		pos = writeShort(data, pos, xMin);
+		pos = writeShort(data, pos, yMin);
+		pos = writeShort(data, pos, xMax);
+		pos = writeShort(data, pos, yMax);
+		for (int i = 0; i < contourCount; i++) {
+			pos = writeShort(data, pos, endPoints[i]);
+		}
+		pos = writeShort(data, pos, 0); // no instructions
+
+		for (int i = 0; i < pointCount;) {
+			int run = repeatCount(flags, i);
+			if (run > 0) {
+				data[pos++] = (byte) (flags[i] | REPEAT);
+				data[pos++] = (byte) run;
+			} else {
+				data[pos++] = flags[i];
+			}
+			i += run + 1;
+		}
+
+		int lastX = 0;
+		for (int i = 0; i < pointCount; i++) {
+			int dx = xs[i] - lastX;
+			if ((flags[i] & X_SHORT) != 0) {
+				data[pos++] = (byte) Math.abs(dx);
+			} else if (dx != 0) {
+				pos = writeShort(data, pos, dx);
+			}
+			lastX = xs[i];
+		}
+
+		int lastY = 0;
+		for (int i = 0; i < pointCount; i++) {
+			int dy = ys[i] - lastY;
+			if ((flags[i] & Y_SHORT) != 0) {
+				data[pos++] = (byte) Math.abs(dy);
+			} else if (dy != 0) {
+				pos = writeShort(data, pos, dy);
+			}
+			lastY = ys[i];
+		}
+
+		return new FCompiledGlyph(codePoint, advanceWidth, xMin, yMin, xMax, yMax,
+				pointCount, contourCount, data, pointsRemoved, bytesSaved);
+	}
+
+	/**
+	 * Computes the flags of all points and returns the size of the glyf
+	 * record, 0 if there are no contours.
+	 */
+	private int layout() {
+
+		if (contourCount == 0) {
+			return 0;
+		}
+		if (flags.length < pointCount) {
+			flags = new byte[Math.max(pointCount, flags.length * 2)];
+		}
+
+		int flagsSize = 0;
+		int xSize = 0;
+		int ySize = 0;
+		int lastX = 0, lastY = 0;
+
+		for (int i = 0; i < pointCount; i++) {
+
+			int x = xs[i], y = ys[i];
+			int dx = x - lastX, dy = y - lastY;
+			int flag = onCurve[i] ? ON_CURVE : 0;
+
+			if (dx == 0) {
+				flag |= X_SAME_OR_POSITIVE;
+			} else if (dx >= -255 && dx <= 255) {
+				flag |= X_SHORT | (dx > 0 ? X_SAME_OR_POSITIVE : 0);
+				xSize += 1;
+			} else {
+				xSize += 2;
+			}
+
+			if (dy == 0) {
+				flag |= Y_SAME_OR_POSITIVE;
+			} else if (dy >= -255 && dy <= 255) {
+				flag |= Y_SHORT | (dy > 0 ? Y_SAME_OR_POSITIVE : 0);
+				ySize += 1;
+			} else {
+				ySize += 2;
+			}
+
+			flags[i] = (byte) flag;
+			lastX = x;
+			lastY = y;
+		}
+
+		for (int i = 0; i < pointCount;) {
+			int run = repeatCount(flags, i);
+			flagsSize += run > 0 ? 2 : 1;
+			i += run + 1;
+		}
+
+		return 10 + 2 * contourCount + 2 + flagsSize + xSize + ySize;
+	}
+
+	/**
+	 * Returns how many of the following flags are equal to flags[i] (max 255).
+	 */
+	private int repeatCount(byte[] flags, int i) {
+		int run = 0;
+		while (i + run + 1 < pointCount && flags[i + run + 1] == flags[i] && run < 255) {
+			run++;
+		}
+		return run;
+	}
+
+	private static int toFUnit(float value) {
+		int v = Math.round(value);
+		return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+	}
+
+	private static int writeShort(byte[] data, int pos, int value) {
+		data[pos] = (byte) (value >> 8);
+		data[pos + 1] = (byte) value;
+		return pos + 2;
+	}
+
+	private static int[] grow(int[] array) {
+		int[] newArray = new int[array.length * 2];
+		System.arraycopy(array, 0, newArray, 0, array.length);
+		return newArray;
+	}
+
+}
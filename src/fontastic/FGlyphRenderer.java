@@ -0,0 +1,334 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PShape;
+
+/**
+ * Class FGlyphRenderer
+ *
+ * Draws the glyphs of a font in a sketch, e.g. to preview them while they are
+ * edited, before the font is built. The bezier curves of every glyph are
+ * flattened to polygons once and kept until the glyph changes, so drawing
+ * unchanged glyphs only passes their points to Processing. A whole string is
+ * drawn as one shape with the current fill and stroke, like text().
+ *
+ * @example FGlyphRenderer preview = new FGlyphRenderer(f);
+ *          ...
+ *          fill(0);
+ *          preview.draw(g, "HELLO", 20, 200, 72);
+ *
+ */
+public class FGlyphRenderer {
+
+	/** Default maximum distance of the polygons from the curves in font units */
+	static final float DEFAULT_TOLERANCE = 2f;
+
+	/** Maximum number of lines per bezier segment */
+	static final int MAX_SEGMENTS = 64;
+
+	private Fontastic font;
+	private float tolerance = DEFAULT_TOLERANCE;
+
+	/** Flattened glyphs, removed with their glyphs */
+	private Map<FGlyph, Outline> outlines = new WeakHashMap<FGlyph, Outline>();
+
+	/**
+	 * Creates a renderer for the glyphs of a font.
+	 * 
+	 * @param font
+	 *            The font whose glyphs are drawn
+	 */
+	public FGlyphRenderer(Fontastic font) {
+		this.font = font;
+	}
+
+	/**
+	 * Sets how closely the polygons follow the bezier curves. Smaller values
+	 * give smoother curves with more points. Default is 2.
+	 * 
+	 * @param tolerance
+	 *            Maximum distance in font units
+	 */
+	public void setTolerance(float tolerance) {
+		if (tolerance <= 0)
+			throw new IllegalArgumentException("tolerance must be > 0");
+		if (tolerance != this.tolerance) {
+			this.tolerance = tolerance;
+			outlines.clear();
+		}
+	}
+
+	public float getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Draws a string with the glyphs of the font as one shape. Characters
+	 * without a glyph are skipped by the default advance width.
+	 * 
+	 * @param g
+	 *            The graphics to draw to, g in a sketch
+	 * @param text
+	 *            The string to draw
+	 * @param x
+	 *            x of the start of the baseline
+	 * @param y
+	 *            y of the baseline
+	 * @param size
+	 *            Font size in pixels (the height of the em square)
+	 * 
+	 * @return x of the end of the string
+	 */
+	public float draw(PGraphics g, String text, float x, float y, float size) {
+		float scale = size / font.getInfo().em;
+		boolean open = false;
+		for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+			FGlyph glyph = font.getGlyph(text.codePointAt(i));
+			if (glyph == null) {
+				x += font.getInfo().advanceWidth * scale;
+				continue;
+			}
+			Outline outline = getOutline(glyph);
+			if (outline.contourCount > 0) {
+				if (!open)
+					g.beginShape();
+				outline.draw(g, x, y, scale, !open);
+				open = true;
+			}
+			x += outline.advanceWidth * scale;
+		}
+		if (open)
+			g.endShape(PConstants.CLOSE);
+		return x;
+	}
+
+	/**
+	 * Draws one glyph, see draw(PGraphics, String, float, float, float).
+	 * 
+	 * @return x of the end of the glyph
+	 */
+	public float draw(PGraphics g, int codePoint, float x, float y, float size) {
+		return draw(g, new String(Character.toChars(codePoint)), x, y, size);
+	}
+
+	/**
+	 * Returns the width of a string drawn with draw().
+	 * 
+	 * @param size
+	 *            Font size in pixels
+	 */
+	public float textWidth(String text, float size) {
+		float width = 0;
+		for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+			FGlyph glyph = font.getGlyph(text.codePointAt(i));
+			width += glyph != null ? glyph.getAdvanceWidth() : font.getInfo().advanceWidth;
+		}
+		return width * size / font.getInfo().em;
+	}
+
+	/**
+	 * Returns a glyph as a PShape in font units, with y pointing down as in
+	 * the examples. The shape is kept until the glyph changes, and it is
+	 * drawn with the current fill and stroke, e.g. shape(preview.getShape(g,
+	 * 'A')).
+	 * 
+	 * @param g
+	 *            The graphics that creates the shape, g in a sketch
+	 * @param codePoint
+	 *            Unicode code point of the glyph
+	 * 
+	 * @return The shape, or null if there is no glyph for the code point
+	 */
+	public PShape getShape(PGraphics g, int codePoint) {
+		FGlyph glyph = font.getGlyph(codePoint);
+		if (glyph == null)
+			return null;
+		Outline outline = getOutline(glyph);
+		if (outline.shape == null || outline.graphics != g) {
+			PShape shape = g.createShape();
+			shape.beginShape();
+			outline.draw(shape);
+			shape.endShape(PConstants.CLOSE);
+			shape.disableStyle();
+			outline.shape = shape;
+			outline.graphics = g;
+		}
+		return outline.shape;
+	}
+
+	/**
+	 * Forgets all flattened glyphs and shapes.
+	 */
+	public void clear() {
+		outlines.clear();
+	}
+
+	/**
+	 * Returns the flattened glyph, flattening it again if it has changed.
+	 */
+	private Outline getOutline(FGlyph glyph) {
+		long version = glyph.getVersion();
+		Outline outline = outlines.get(glyph);
+		if (outline == null || outline.version != version || outline.advanceWidth != glyph.getAdvanceWidth()) {
+			outline = new Outline(glyph, version, tolerance);
+			outlines.put(glyph, outline);
+		}
+		return outline;
+	}
+
+	/**
+	 * A glyph flattened to polygons, one per contour.
+	 */
+	private static class Outline {
+
+		final long version;
+		final int advanceWidth;
+
+		/** x and y of the points of all contours */
+		float[] coordinates = new float[64];
+		/** Index of the first point after every contour */
+		int[] contourEnds;
+		int contourCount;
+		int pointCount;
+
+		PShape shape;
+		PGraphics graphics;
+
+		Outline(FGlyph glyph, long version, float tolerance) {
+			this.version = version;
+			this.advanceWidth = glyph.getAdvanceWidth();
+			contourEnds = new int[glyph.getContourCount()];
+			for (int i = 0; i < glyph.getContourCount(); i++) {
+				FContour contour = glyph.getContour(i);
+				if (contour.getPointCount() == 0)
+					continue;
+				flatten(contour, tolerance);
+				contourEnds[contourCount++] = pointCount;
+			}
+		}
+
+		/**
+		 * Adds the points of a contour, with the bezier segments split into
+		 * lines that are at most tolerance from the curve.
+		 */
+		private void flatten(FContour contour, float tolerance) {
+			int n = contour.pointCount;
+			float[] points = contour.coordinates;
+			float[] controlPoints = contour.controlPoints;
+
+			for (int i = 0; i < n; i++) {
+
+				int j = (i + 1) % n;
+				float x = points[2 * i], y = points[2 * i + 1];
+				float nextX = points[2 * j], nextY = points[2 * j + 1];
+
+				addPoint(x, y);
+
+				boolean hasCp1 = n > 1 && contour.hasControlPoint2(i);
+				boolean hasCp2 = n > 1 && contour.hasControlPoint1(j);
+
+				if (hasCp1 || hasCp2) {
+					float c1x = hasCp1 ? controlPoints[4 * i + 2] : x;
+					float c1y = hasCp1 ? controlPoints[4 * i + 3] : y;
+					float c2x = hasCp2 ? controlPoints[4 * j] : nextX;
+					float c2y = hasCp2 ? controlPoints[4 * j + 1] : nextY;
+
+					// Number of lines within the tolerance (Wang's formula)
+					float ddx = Math.max(Math.abs(x - 2 * c1x + c2x), Math.abs(c1x - 2 * c2x + nextX));
+					float ddy = Math.max(Math.abs(y - 2 * c1y + c2y), Math.abs(c1y - 2 * c2y + nextY));
+					double dd = Math.sqrt(ddx * ddx + ddy * ddy);
+					int segments = (int) Math.ceil(Math.sqrt(0.75 * dd / tolerance));
+					segments = Math.max(1, Math.min(MAX_SEGMENTS, segments));
+
+					for (int k = 1; k < segments; k++) {
+						float t = k / (float) segments;
+						float u = 1 - t;
+						float a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t * t * t;
+						addPoint(a * x + b * c1x + c * c2x + d * nextX,
+								a * y + b * c1y + c * c2y + d * nextY);
+					}
+				}
+			}
+		}
+
+		private void addPoint(float x, float y) {
+			if (2 * pointCount + 2 > coordinates.length) {
+				float[] grown = new float[2 * coordinates.length];
+				System.arraycopy(coordinates, 0, grown, 0, 2 * pointCount);
+				coordinates = grown;
+			}
+			coordinates[2 * pointCount] = x;
+			coordinates[2 * pointCount + 1] = y;
+			pointCount++;
+		}
+
+		/**
+		 * Adds the contours to the shape g is drawing. The first contour of
+		 * the shape is its outline, all others are added with beginContour().
+		 * 
+		 * @param first
+		 *            True if these are the first contours of the shape
+		 */
+		void draw(PGraphics g, float x, float y, float scale, boolean first) {
+			int start = 0;
+			for (int c = 0; c < contourCount; c++) {
+				boolean contour = c > 0 || !first;
+				if (contour)
+					g.beginContour();
+				for (int i = start; i < contourEnds[c]; i++) {
+					g.vertex(x + coordinates[2 * i] * scale, y - coordinates[2 * i + 1] * scale);
+				}
+				if (contour)
+					g.endContour();
+				start = contourEnds[c];
+			}
+		}
+
+		void draw(PShape shape) {
+			int start = 0;
+			for (int c = 0; c < contourCount; c++) {
+				if (c > 0)
+					shape.beginContour();
+				for (int i = start; i < contourEnds[c]; i++) {
+					shape.vertex(coordinates[2 * i], -coordinates[2 * i + 1]);
+				}
+				if (c > 0)
+					shape.endContour();
+				start = contourEnds[c];
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,274 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class FGlyphStore
+ *
+ * Stores the glyphs of a font in the order they were added, with an index by
+ * code point for constant time lookup. Adding a glyph for a code point that is
+ * already in the store replaces the old glyph at its position.
+ *
+ * The index is an open addressing hash table of int keys with linear probing,
+ * so no objects are allocated per lookup. Its size depends on the number of
+ * glyphs only, not on the range of code points (all 17 Unicode planes).
+ *
+ * Glyphs tell their store when they change, so a snapshot only copies the
+ * glyphs that have changed since the last one, see snapshot().
+ *
+ */
+class FGlyphStore implements Iterable<FGlyph> {
+
+	private static final int EMPTY = -1;
+
+	private List<FGlyph> glyphs = new ArrayList<FGlyph>();
+
+	/** Code points, EMPTY for free slots */
+	private int[] keys;
+	/** Position of the glyph in glyphs for every slot */
+	private int[] positions;
+	private int mask;
+	/** True while keys and positions are shared with the last snapshot */
+	private boolean indexShared;
+
+	/** The last snapshot, see snapshot() */
+	private FGlyphStore snapshot;
+	/** Glyphs that have told the store about a change since the last snapshot */
+	private Set<FGlyph> changedGlyphs = newGlyphSet();
+	/** Glyphs that can change without telling the store, see FGlyph.isWatched() */
+	private Set<FGlyph> watchedGlyphs = newGlyphSet();
+
+	FGlyphStore() {
+		allocate(64);
+	}
+
+	/**
+	 * Creates a snapshot store that shares the index of store, see
+	 * snapshot().
+	 */
+	private FGlyphStore(FGlyphStore store, List<FGlyph> glyphs) {
+		this.glyphs = glyphs;
+		this.keys = store.keys;
+		this.positions = store.positions;
+		this.mask = store.mask;
+		store.indexShared = true;
+	}
+
+	/**
+	 * Returns the glyph of a code point, or null if there is none.
+	 */
+	FGlyph get(int codePoint) {
+		int position = position(codePoint);
+		return position != EMPTY ? glyphs.get(position) : null;
+	}
+
+	/**
+	 * Adds a glyph, or replaces the glyph with the same code point.
+	 *
+	 * @return The replaced glyph, or null if the code point was not in the store yet.
+	 */
+	FGlyph put(FGlyph glyph) {
+		glyph.store = this;
+		changed(glyph);
+		int codePoint = glyph.getCodePoint();
+		int slot = hash(codePoint) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == codePoint) {
+				FGlyph replaced = glyphs.set(positions[slot], glyph);
+				replaced.store = null;
+				changedGlyphs.remove(replaced);
+				watchedGlyphs.remove(replaced);
+				return replaced;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (indexShared) {
+			keys = keys.clone();
+			positions = positions.clone();
+			indexShared = false;
+		}
+		keys[slot] = codePoint;
+		positions[slot] = glyphs.size();
+		glyphs.add(glyph);
+
+		if (glyphs.size() * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		return null;
+	}
+
+	int size() {
+		return glyphs.size();
+	}
+
+	/**
+	 * Returns all glyphs in the order they were added.
+	 */
+	List<FGlyph> getGlyphs() {
+		return Collections.unmodifiableList(glyphs);
+	}
+
+	/**
+	 * Returns a store with snapshots of the glyphs, see FGlyph.snapshot(). No
+	 * glyphs can be added to it. The index is shared until the next glyph is
+	 * added, and glyphs that have not changed since their last snapshot are
+	 * shared with the stores of earlier snapshots.
+	 * 
+	 * Only the glyphs that have told the store about a change since the last
+	 * snapshot are looked at, and the glyphs that can change without telling
+	 * it (see FGlyph.isWatched()). If none of them has changed, the last
+	 * snapshot is returned.
+	 */
+	FGlyphStore snapshot() {
+		if (snapshot == null) {
+			List<FGlyph> copies = new ArrayList<FGlyph>(glyphs.size());
+			watchedGlyphs.clear();
+			for (int i = 0; i < glyphs.size(); i++) {
+				copies.add(glyphs.get(i).snapshot());
+				watch(glyphs.get(i));
+			}
+			changedGlyphs.clear();
+			snapshot = new FGlyphStore(this, copies);
+			return snapshot;
+		}
+
+		for (FGlyph glyph : watchedGlyphs) {
+			if (glyph.snapshot() != snapshot.glyphs.get(position(glyph.getCodePoint())))
+				changedGlyphs.add(glyph);
+		}
+		if (changedGlyphs.isEmpty())
+			return snapshot;
+
+		FGlyph[] changed = changedGlyphs.toArray(new FGlyph[changedGlyphs.size()]);
+		List<FGlyph> copies = new ArrayList<FGlyph>(glyphs.size());
+		copies.addAll(snapshot.glyphs);
+		while (copies.size() < glyphs.size()) {
+			copies.add(null); // added since the last snapshot, so in changed
+		}
+		for (FGlyph glyph : changed) {
+			copies.set(position(glyph.getCodePoint()), glyph.snapshot());
+			watch(glyph);
+		}
+		// after the snapshots, which write back the points of getPoints()
+		changedGlyphs.clear();
+		snapshot = new FGlyphStore(this, copies);
+		return snapshot;
+	}
+
+	/**
+	 * Called by the glyphs of the store when they change. Glyphs compiled on
+	 * several threads may write back the points of getPoints() at the same
+	 * time, see FContour.sync().
+	 */
+	void changed(FGlyph glyph) {
+		// without a snapshot, the next one looks at all glyphs anyway
+		if (snapshot != null) {
+			synchronized (changedGlyphs) {
+				changedGlyphs.add(glyph);
+			}
+		}
+	}
+
+	/**
+	 * Makes the next build compile all glyphs again, see
+	 * FGlyph.setCompiledGlyph(). The last snapshot is dropped with the
+	 * compiled glyphs it holds.
+	 */
+	void clearCompiledGlyphs() {
+		snapshot = null;
+		changedGlyphs.clear();
+		for (int i = 0; i < glyphs.size(); i++) {
+			glyphs.get(i).setCompiledGlyph(null, 0);
+		}
+	}
+
+	public Iterator<FGlyph> iterator() {
+		return getGlyphs().iterator();
+	}
+
+	private void rehash(int capacity) {
+		allocate(capacity);
+		for (int i = 0; i < glyphs.size(); i++) {
+			int slot = hash(glyphs.get(i).getCodePoint()) & mask;
+			while (keys[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = glyphs.get(i).getCodePoint();
+			positions[slot] = i;
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		positions = new int[capacity];
+		mask = capacity - 1;
+		indexShared = false;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Returns the position of the glyph of a code point in glyphs, or EMPTY
+	 * if there is none.
+	 */
+	private int position(int codePoint) {
+		int slot = hash(codePoint) & mask;
+		while (keys[slot] != EMPTY) {
+			if (keys[slot] == codePoint) {
+				return positions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return EMPTY;
+	}
+
+	private void watch(FGlyph glyph) {
+		if (glyph.isWatched())
+			watchedGlyphs.add(glyph);
+		else
+			watchedGlyphs.remove(glyph);
+	}
+
+	private static Set<FGlyph> newGlyphSet() {
+		return Collections.newSetFromMap(new IdentityHashMap<FGlyph, Boolean>());
+	}
+
+	private static int hash(int codePoint) {
+		int h = codePoint * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
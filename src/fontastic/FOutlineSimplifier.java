@@ -0,0 +1,158 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Class FOutlineSimplifier
+ *
+ * Removes redundant points from a contour in font units: on-curve points that
+ * lie within a tolerance of the straight line between their neighbours,
+ * consecutive duplicate points, and off-curve points on top of an on-curve
+ * neighbour of a straight segment. Contours that are left with less than
+ * three points or no area are dropped.
+ *
+ * Outlines sampled at a fixed segment length (e.g. with geomerative) have
+ * many of these points.
+ *
+ */
+class FOutlineSimplifier {
+
+	private double tolerance;
+
+	/**
+	 * @param tolerance
+	 *            Maximum distance in font units between a removed point and
+	 *            the outline without it.
+	 */
+	FOutlineSimplifier(float tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Simplifies the contour of count points at from and writes the result
+	 * to to, which must not be after from.
+	 * 
+	 * @return The number of points written, 0 if the contour was dropped.
+	 */
+	int simplify(int[] xs, int[] ys, boolean[] onCurve, int from, int count, int to) {
+
+		int end = from + count;
+
+		// the first point is always kept
+		xs[to] = xs[from];
+		ys[to] = ys[from];
+		onCurve[to] = onCurve[from];
+		int kept = to + 1;
+		int anchor = from;
+
+		for (int i = from + 1; i < end; i++) {
+
+			int previous = kept - 1;
+			int next = i + 1 < end ? i + 1 : to;
+
+			if (!isRedundant(xs, ys, onCurve, previous, anchor, i, next)) {
+				xs[kept] = xs[i];
+				ys[kept] = ys[i];
+				onCurve[kept] = onCurve[i];
+				kept++;
+				anchor = i;
+			}
+		}
+
+		int written = kept - to;
+		if (written < 3 || isFlat(xs, ys, to, written)) {
+			return 0;
+		}
+		return written;
+	}
+
+	/**
+	 * Checks whether point i can be removed. previous is the last point kept
+	 * (at its new position), anchor is its original position, so the points
+	 * between anchor and i have been removed already.
+	 */
+	private boolean isRedundant(int[] xs, int[] ys, boolean[] onCurve, int previous,
+			int anchor, int i, int next) {
+
+		boolean samePrevious = xs[i] == xs[previous] && ys[i] == ys[previous];
+		boolean sameNext = xs[i] == xs[next] && ys[i] == ys[next];
+
+		if (onCurve[i]) {
+
+			// duplicate of an on-curve neighbour
+			if ((samePrevious && onCurve[previous]) || (sameNext && onCurve[next])) {
+				return true;
+			}
+
+			// on a straight line with the points removed before it
+			if (onCurve[previous] && onCurve[next]) {
+				for (int k = anchor + 1; k <= i; k++) {
+					if (distance(xs, ys, k, previous, next) > tolerance) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return false;
+		}
+
+		// an off-curve point on top of an end point of its segment makes it straight
+		return onCurve[previous] && onCurve[next]
+				&& (samePrevious || sameNext);
+	}
+
+	/**
+	 * Returns the distance of point k from the line segment from a to b.
+	 */
+	private static double distance(int[] xs, int[] ys, int k, int a, int b) {
+		double dx = xs[b] - xs[a], dy = ys[b] - ys[a];
+		double px = xs[k] - xs[a], py = ys[k] - ys[a];
+		double lengthSquared = dx * dx + dy * dy;
+		double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared)) : 0;
+		return Math.hypot(px - t * dx, py - t * dy);
+	}
+
+	/**
+	 * Checks whether all points are on one line, so the contour has no area.
+	 */
+	private static boolean isFlat(int[] xs, int[] ys, int start, int count) {
+		int end = start + count;
+		int dx = 0, dy = 0;
+		for (int i = start + 1; i < end; i++) {
+			int px = xs[i] - xs[start], py = ys[i] - ys[start];
+			if (dx == 0 && dy == 0) {
+				dx = px;
+				dy = py;
+			} else if ((long) dx * py - (long) dy * px != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,178 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Class FOutputWriter
+ *
+ * Writes the files of a build on background threads, so a file is written
+ * while the next one is still being encoded. Every file is written to a
+ * temporary file in the same directory and then renamed atomically.
+ *
+ */
+class FOutputWriter {
+
+	private static final ExecutorService executor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Fontastic output");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	private final List<Future<FArtifact>> writes = new ArrayList<Future<FArtifact>>();
+	private final long start = System.nanoTime();
+
+	/**
+	 * Starts writing bytes to file.
+	 * 
+	 * @param format
+	 *            Format of the font, null for other files
+	 */
+	void write(final File file, final Fontastic.Format format, final byte[] bytes) {
+		writes.add(executor.submit(new Callable<FArtifact>() {
+			public FArtifact call() {
+				long start = System.nanoTime();
+				try {
+					writeAtomically(file, bytes);
+					return new FArtifact(file, format, bytes.length, System.nanoTime() - start, true);
+				} catch (IOException e) {
+					System.out.println("Error while writing file " + file);
+					e.printStackTrace();
+					return new FArtifact(file, format, 0, System.nanoTime() - start, false);
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Adds a file that has been written by someone else, i.e. the TTF file
+	 * written by doubletype.
+	 */
+	void add(File file, Fontastic.Format format) {
+		final FArtifact artifact = new FArtifact(file, format, file.length(), 0, file.isFile());
+		FutureTask<FArtifact> written = new FutureTask<FArtifact>(new Callable<FArtifact>() {
+			public FArtifact call() {
+				return artifact;
+			}
+		});
+		written.run();
+		writes.add(written);
+	}
+
+	/**
+	 * Waits until all files have been written.
+	 * 
+	 * @return The written files in the order they were added.
+	 */
+	FBuildResult finish() {
+		List<FArtifact> artifacts = new ArrayList<FArtifact>(writes.size());
+		boolean interrupted = false;
+		for (Future<FArtifact> write : writes) {
+			while (true) {
+				try {
+					artifacts.add(write.get());
+					break;
+				} catch (InterruptedException e) {
+					// the files are written anyway, so wait for them
+					interrupted = true;
+				} catch (ExecutionException e) {
+					System.out.println("Error while writing file.");
+					e.getCause().printStackTrace();
+					break;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return new FBuildResult(artifacts, System.nanoTime() - start);
+	}
+
+	/**
+	 * Writes bytes to a temporary file next to file and renames it to file, so
+	 * other processes never read a partly written file.
+	 */
+	static void writeAtomically(File file, byte[] bytes) throws IOException {
+		File temp = createTempFile(file);
+		try {
+			FileChannel channel = new FileOutputStream(temp).getChannel();
+			try {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} finally {
+				channel.close();
+			}
+			moveAtomically(temp, file);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Creates a temporary file next to file, to be written and then renamed
+	 * to file with moveAtomically(). The caller deletes it if that fails.
+	 */
+	static File createTempFile(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		return File.createTempFile(file.getName(), ".tmp", directory);
+	}
+
+	/**
+	 * Renames a completely written temporary file to file, replacing it.
+	 */
+	static void moveAtomically(File temp, File file) throws IOException {
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+/**
+ * Class FStageMetrics
+ *
+ * Time, size and allocations of one stage of a build.
+ *
+ */
+public class FStageMetrics {
+
+	private final String fontname;
+	private final FBuildStage stage;
+	private final long nanos;
+	private final long bytes;
+	private final int glyphs;
+	private final int points;
+	private final long allocatedBytes;
+
+	FStageMetrics(String fontname, FBuildStage stage, long nanos, long bytes, int glyphs,
+			int points, long allocatedBytes) {
+		this.fontname = fontname;
+		this.stage = stage;
+		this.nanos = nanos;
+		this.bytes = bytes;
+		this.glyphs = glyphs;
+		this.points = points;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * Returns the name of the font that has been built.
+	 * 
+	 * @return String
+	 */
+	public String getFontname() {
+		return fontname;
+	}
+
+	/**
+	 * Returns the stage.
+	 * 
+	 * @return FBuildStage
+	 */
+	public FBuildStage getStage() {
+		return stage;
+	}
+
+	/**
+	 * Returns the time the stage took.
+	 * 
+	 * @return Time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Returns the number of bytes the stage produced, e.g. the size of the
+	 * TTF file for ASSEMBLE or of all files for WRITE.
+	 * 
+	 * @return long
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of glyphs of the stage, 0 for stages that work on
+	 * whole files.
+	 * 
+	 * @return int
+	 */
+	public int getGlyphs() {
+		return glyphs;
+	}
+
+	/**
+	 * Returns the number of TrueType points of the compiled glyphs, 0 for
+	 * stages that work on whole files.
+	 * 
+	 * @return int
+	 */
+	public int getPoints() {
+		return points;
+	}
+
+	/**
+	 * Returns an estimate of the memory allocated during the stage. Only the
+	 * thread that builds the font is measured, so memory allocated by the
+	 * threads of a parallel compile or of the file writes is not included.
+	 * 
+	 * @return Number of bytes, or -1 if the JVM can not measure it.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return fontname + " " + stage + ": " + nanos / 1000000f + " ms, " + bytes + " bytes, "
+				+ glyphs + " glyphs, " + points + " points, " + allocatedBytes + " bytes allocated";
+	}
+
+}
@@ -0,0 +1,94 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Class FStageTimer
+ *
+ * Measures one stage of a build and reports it to the build listener. Without
+ * a listener, Fontastic uses NONE, which measures nothing.
+ *
+ */
+class FStageTimer {
+
+	/** Timer for builds without a listener */
+	static final FStageTimer NONE = new FStageTimer(null, null, null);
+
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private final FBuildListener listener;
+	private final String fontname;
+	private final FBuildStage stage;
+	private final long start;
+	private final long allocatedAtStart;
+
+	FStageTimer(FBuildListener listener, String fontname, FBuildStage stage) {
+		this.listener = listener;
+		this.fontname = fontname;
+		this.stage = stage;
+		this.allocatedAtStart = listener != null ? allocatedBytes() : 0;
+		this.start = listener != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Reports the stage to the listener.
+	 * 
+	 * @param bytes
+	 *            Bytes produced by the stage
+	 * @param glyphs
+	 *            Number of glyphs, 0 for stages that work on whole files
+	 * @param points
+	 *            Number of points, 0 for stages that work on whole files
+	 */
+	void finish(long bytes, int glyphs, int points) {
+		if (listener == null)
+			return;
+		long nanos = System.nanoTime() - start;
+		long allocated = allocatedBytes();
+		listener.stageFinished(new FStageMetrics(fontname, stage, nanos, bytes, glyphs, points,
+				allocated >= 0 && allocatedAtStart >= 0 ? allocated - allocatedAtStart : -1));
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread so far, or -1 if the
+	 * JVM can not measure it.
+	 */
+	private static long allocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported()
+					&& sunThreads.isThreadAllocatedMemoryEnabled())
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,179 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class FTemplate
+ *
+ * A text template with variables like %FONTNAME%, e.g. the HTML template
+ * buildFont() writes for previewing the WOFF. The text is split into literal
+ * parts and variables once, so rendering only writes the parts one after the
+ * other. Variables without a value are left as they are.
+ *
+ * The literal parts are stored as UTF-8, so a template can be rendered for
+ * many fonts without encoding it again.
+ *
+ */
+public class FTemplate {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Literal parts as UTF-8 bytes, with the variable names in between */
+	private final List<byte[]> literals = new ArrayList<byte[]>();
+	private final List<String> variables = new ArrayList<String>();
+	private int literalLength;
+
+	/**
+	 * Parses a template.
+	 * 
+	 * @example FTemplate t = new FTemplate("<h1>%FONTNAME%</h1>");
+	 * 
+	 * @param text
+	 *            The template, with variables written as %NAME% (letters,
+	 *            digits and _)
+	 */
+	public FTemplate(String text) {
+		int start = 0;
+		int i = text.indexOf('%');
+		while (i >= 0) {
+			int end = i + 1;
+			while (end < text.length() && isNameChar(text.charAt(end))) {
+				end++;
+			}
+			if (end > i + 1 && end < text.length() && text.charAt(end) == '%') {
+				addLiteral(text.substring(start, i));
+				variables.add(text.substring(i + 1, end));
+				start = end + 1;
+				i = text.indexOf('%', start);
+			} else {
+				i = text.indexOf('%', i + 1);
+			}
+		}
+		addLiteral(text.substring(start));
+	}
+
+	/**
+	 * Renders the template.
+	 * 
+	 * @param values
+	 *            Value of every variable
+	 * 
+	 * @return The text as UTF-8 bytes.
+	 */
+	public byte[] render(Map<String, String> values) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(literalLength + 64
+				* variables.size());
+		try {
+			render(values, out);
+		} catch (IOException e) {
+			// ByteArrayOutputStream does not throw
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Renders the template as UTF-8 to a stream.
+	 * 
+	 * @param values
+	 *            Value of every variable
+	 * @param out
+	 *            The stream, which is not closed
+	 */
+	public void render(Map<String, String> values, OutputStream out) throws IOException {
+		for (int i = 0; i < variables.size(); i++) {
+			out.write(literals.get(i));
+			String value = values.get(variables.get(i));
+			out.write((value != null ? value : "%" + variables.get(i) + "%").getBytes(UTF8));
+		}
+		out.write(literals.get(variables.size()));
+	}
+
+	/**
+	 * Returns the names of the variables in the order they appear in the
+	 * template.
+	 * 
+	 * @return List of variable names
+	 */
+	public List<String> getVariables() {
+		return new ArrayList<String>(variables);
+	}
+
+	/**
+	 * Returns whether the template has the variable.
+	 */
+	boolean uses(String name) {
+		return variables.contains(name);
+	}
+
+	private void addLiteral(String literal) {
+		byte[] bytes = literal.getBytes(UTF8);
+		literals.add(bytes);
+		literalLength += bytes.length;
+	}
+
+	private static boolean isNameChar(char c) {
+		return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+
+	/**
+	 * Escapes text for HTML, e.g. glyphs like < and &.
+	 */
+	static String escapeHtml(String text) {
+		StringBuilder sb = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,893 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import processing.core.PVector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class FTrueTypeWriter
+ *
+ * Assembles compiled glyphs and font metadata into a TrueType font (head, hhea,
+ * maxp, OS/2, hmtx, cmap, loca, glyf, name and post tables, and fvar and gvar for
+ * variable fonts) in memory.
+ *
+ * The glyph order is .notdef, .null, nonmarkingreturn, space, followed by the
+ * glyphs in the order they were added, like doubletype does.
+ *
+ */
+class FTrueTypeWriter {
+
+	/** Seconds between 1904-01-01 (TrueType epoch) and 1970-01-01 */
+	private static final long EPOCH_DIFFERENCE = 2082844800L;
+
+	private static final int CHECKSUM_MAGIC = 0xB1B0AFBA;
+
+	/** Maximum number of glyphs of a TrueType font, including the default glyphs */
+	static final int MAX_GLYPHS = 0xFFFF;
+
+	/** Leading number of a version string such as "1.2" or "Version 1.2 beta" */
+	private static final Pattern VERSION_NUMBER = Pattern
+			.compile("^\\s*(?:[Vv]ersion\\s*)?(\\d{1,5})(?:\\.(\\d+))?");
+
+	/** First ID of the names that are not predefined, e.g. axis names */
+	private static final int FIRST_NAME_ID = 256;
+
+	private FFontInfo info;
+
+	/** Tables that only depend on info, built once for all fonts of a writer */
+	private final List<FCompiledGlyph> defaultGlyphs;
+	private final byte[] post;
+
+	/** cmap of the last font and its code points, reused by fonts with the same characters */
+	private volatile FCmap lastCmap;
+
+	/**
+	 * Creates a writer for fonts with the names and metrics of info. A writer
+	 * can write several fonts, also at the same time on different threads.
+	 */
+	FTrueTypeWriter(FFontInfo info) throws IOException {
+		this.info = info;
+		this.defaultGlyphs = defaultGlyphs();
+		this.post = post();
+	}
+
+	/**
+	 * Returns the names and metrics of the fonts of this writer.
+	 */
+	FFontInfo getInfo() {
+		return info;
+	}
+
+	/**
+	 * Builds the font.
+	 *
+	 * @param userGlyphs
+	 *            Compiled glyphs in the order they should appear in the font.
+	 *
+	 * @return The TrueType font file as bytes.
+	 */
+	byte[] write(List<FCompiledGlyph> userGlyphs) throws IOException {
+		return write(userGlyphs, info.fontFamilyName);
+	}
+
+	/**
+	 * Builds a font with another family name than the one of info, e.g. for
+	 * the variants of a family built by FFamilyBuilder.
+	 */
+	byte[] write(List<FCompiledGlyph> userGlyphs, String fontFamilyName) throws IOException {
+		return write(userGlyphs, fontFamilyName, null, null);
+	}
+
+	/**
+	 * Builds a variable font with fvar and gvar tables.
+	 * 
+	 * @param variations
+	 *            Axes and masters, or null for a static font.
+	 * @param points
+	 *            For every glyph of userGlyphs, the points of each master (see
+	 *            FGlyphCompiler.compileMasters()), or null if it does not vary.
+	 */
+	byte[] write(List<FCompiledGlyph> userGlyphs, String fontFamilyName, FVariations variations,
+			List<int[][]> points) throws IOException {
+
+		if (defaultGlyphs.size() + userGlyphs.size() > MAX_GLYPHS)
+			throw new IOException("A font can have at most " + MAX_GLYPHS + " glyphs, "
+					+ fontFamilyName + " has " + (defaultGlyphs.size() + userGlyphs.size()));
+
+		FMetrics metrics = new FMetrics();
+		for (FCompiledGlyph glyph : defaultGlyphs) {
+			metrics.add(glyph);
+		}
+		for (FCompiledGlyph glyph : userGlyphs) {
+			metrics.add(glyph);
+		}
+		metrics.finish();
+
+		byte[] glyf = new byte[metrics.glyfLength];
+		int i = 0;
+		for (List<FCompiledGlyph> glyphs : Arrays.asList(defaultGlyphs, userGlyphs)) {
+			for (FCompiledGlyph glyph : glyphs) {
+				System.arraycopy(glyph.data, 0, glyf, metrics.offsets[i++], glyph.data.length);
+			}
+		}
+
+		List<FTable> tables = tables(metrics, new FTable("glyf", glyf), fontFamilyName,
+				variations);
+		if (variations != null) {
+			List<int[][]> glyphPoints = new ArrayList<int[][]>();
+			for (int k = 0; k < defaultGlyphs.size(); k++) {
+				glyphPoints.add(null);
+			}
+			glyphPoints.addAll(points);
+			tables.add(new FTable("fvar", variations.fvar(FIRST_NAME_ID)));
+			tables.add(new FTable("gvar", variations.gvar(glyphPoints)));
+		}
+		return assemble(tables);
+	}
+
+	/**
+	 * Writes a font whose glyf table has been written to a file by FFontStream,
+	 * so that the glyphs never have to be in memory at the same time.
+	 * 
+	 * @param metrics
+	 *            Metrics of the default glyphs and all glyphs in glyf, finished.
+	 * @param glyf
+	 *            Channel with the glyf table at position 0.
+	 * @param glyfChecksum
+	 *            Checksum of the glyf table.
+	 * @param out
+	 *            Channel the font is written to.
+	 */
+	void write(FMetrics metrics, FileChannel glyf, int glyfChecksum, String fontFamilyName,
+			FileChannel out) throws IOException {
+
+		FTable glyfTable = new FTable("glyf", glyf, metrics.glyfLength, glyfChecksum);
+		List<FTable> tables = tables(metrics, glyfTable, fontFamilyName, null);
+
+		// same layout as assemble(), with the font checksum added up from the tables
+		byte[] header = directory(tables);
+		int fontChecksum = checksum(header, 0, header.length);
+		FTable head = null;
+		for (FTable table : tables) {
+			fontChecksum += table.checksum;
+			if (table.tag.equals("head")) {
+				head = table;
+			}
+		}
+		writeInt(head.data, 8, CHECKSUM_MAGIC - fontChecksum);
+
+		out.write(ByteBuffer.wrap(header));
+		for (FTable table : tables) {
+			long position = out.position();
+			if (table.data != null) {
+				out.write(ByteBuffer.wrap(table.data));
+			} else {
+				long done = 0;
+				while (done < table.length) {
+					done += table.source.transferTo(done, table.length - done, out);
+				}
+				out.position(position + table.length);
+			}
+			out.write(ByteBuffer.allocate(pad4(table.length) - table.length));
+		}
+	}
+
+	/**
+	 * The default glyphs, which come first in every font.
+	 */
+	List<FCompiledGlyph> getDefaultGlyphs() {
+		return defaultGlyphs;
+	}
+
+	/**
+	 * Builds all tables of a font in the recommended order, with the given glyf table.
+	 */
+	private List<FTable> tables(FMetrics metrics, FTable glyf, String fontFamilyName,
+			FVariations variations) throws IOException {
+
+		boolean shortLoca = metrics.glyfLength / 2 <= 0xFFFF;
+		ByteArrayOutputStream locaBytes = new ByteArrayOutputStream();
+		DataOutputStream loca = new DataOutputStream(locaBytes);
+		for (int offset : metrics.offsets) {
+			writeLocaEntry(loca, offset, shortLoca);
+		}
+
+		List<FTable> tables = new ArrayList<FTable>();
+		tables.add(new FTable("head", head(metrics, shortLoca)));
+		tables.add(new FTable("hhea", hhea(metrics)));
+		tables.add(new FTable("maxp", maxp(metrics)));
+		tables.add(new FTable("OS/2", os2(metrics)));
+		tables.add(new FTable("hmtx", hmtx(metrics)));
+		tables.add(new FTable("cmap", cmap(metrics.codePoints)));
+		tables.add(new FTable("loca", locaBytes.toByteArray()));
+		tables.add(glyf);
+		tables.add(new FTable("name", name(fontFamilyName,
+				variations != null ? variations.names() : new ArrayList<String>())));
+		tables.add(new FTable("post", post));
+		return tables;
+	}
+
+	/**
+	 * Creates .notdef (a rectangle), .null, nonmarkingreturn and space.
+	 */
+	private List<FCompiledGlyph> defaultGlyphs() {
+
+		FGlyphCompiler compiler = new FGlyphCompiler();
+		List<FCompiledGlyph> defaults = new ArrayList<FCompiledGlyph>(4);
+
+		float w = 438, h = info.ascender, s = 73;
+		FGlyph notdef = new FGlyph(-1);
+		notdef.setAdvanceWidth(info.advanceWidth);
+		notdef.addContour(new PVector[] { new PVector(0, 0), new PVector(0, h),
+				new PVector(w, h), new PVector(w, 0) });
+		notdef.addContour(new PVector[] { new PVector(s, s), new PVector(w - s, s),
+				new PVector(w - s, h - s), new PVector(s, h - s) });
+		defaults.add(compiler.compile(notdef));
+
+		FGlyph nullGlyph = new FGlyph(0);
+		nullGlyph.setAdvanceWidth(0);
+		defaults.add(compiler.compile(nullGlyph));
+
+		FGlyph cr = new FGlyph(13);
+		cr.setAdvanceWidth(info.advanceWidth);
+		defaults.add(compiler.compile(cr));
+
+		FGlyph space = new FGlyph(' ');
+		space.setAdvanceWidth(info.advanceWidth);
+		defaults.add(compiler.compile(space));
+
+		return defaults;
+	}
+
+	private byte[] head(FMetrics metrics, boolean shortLoca) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(54);
+		DataOutputStream out = new DataOutputStream(bytes);
+		long date = info.created + EPOCH_DIFFERENCE;
+		out.writeInt(0x00010000); // version
+		out.writeInt(fontRevision(info.version));
+		out.writeInt(0); // checkSumAdjustment, set in assemble()
+		out.writeInt(0x5F0F3CF5); // magicNumber
+		out.writeShort(0x0003); // flags: baseline at y=0, lsb at x=0
+		out.writeShort(Math.round(info.em));
+		out.writeLong(date); // created
+		out.writeLong(date); // modified
+		out.writeShort(metrics.xMin);
+		out.writeShort(metrics.yMin);
+		out.writeShort(metrics.xMax);
+		out.writeShort(metrics.yMax);
+		out.writeShort(0); // macStyle
+		out.writeShort(8); // lowestRecPPEM
+		out.writeShort(2); // fontDirectionHint
+		out.writeShort(shortLoca ? 0 : 1); // indexToLocFormat
+		out.writeShort(0); // glyphDataFormat
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns the leading number of a version string as a 16.16 fixed point
+	 * number for the fontRevision of the head table, e.g. 0x00018000 for
+	 * "1.5". Versions that don't start with a number are 1.0.
+	 */
+	static int fontRevision(String version) {
+		Matcher matcher = version != null ? VERSION_NUMBER.matcher(version) : null;
+		if (matcher == null || !matcher.find())
+			return 0x00010000;
+		int major = Math.min(Integer.parseInt(matcher.group(1)), 0x7FFF);
+		double fraction = matcher.group(2) != null ? Double.parseDouble("0." + matcher.group(2)) : 0;
+		return (major << 16) + (int) Math.min(Math.round(fraction * 0x10000), 0xFFFF);
+	}
+
+	private byte[] hhea(FMetrics metrics) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(36);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0x00010000);
+		out.writeShort(ascender(metrics));
+		out.writeShort(-descender(metrics));
+		out.writeShort(lineGap());
+		out.writeShort(metrics.advanceWidthMax);
+		out.writeShort(metrics.minLeftSideBearing);
+		out.writeShort(metrics.minRightSideBearing);
+		out.writeShort(metrics.xMaxExtent);
+		out.writeShort(1); // caretSlopeRise
+		out.writeShort(0); // caretSlopeRun
+		out.writeShort(0); // caretOffset
+		out.writeLong(0); // reserved
+		out.writeShort(0); // metricDataFormat
+		out.writeShort(metrics.numberOfHMetrics);
+		return bytes.toByteArray();
+	}
+
+	private byte[] maxp(FMetrics metrics) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0x00010000);
+		out.writeShort(metrics.numGlyphs);
+		out.writeShort(metrics.maxPoints);
+		out.writeShort(metrics.maxContours);
+		out.writeShort(0); // maxCompositePoints
+		out.writeShort(0); // maxCompositeContours
+		out.writeShort(2); // maxZones
+		for (int i = 0; i < 8; i++) {
+			out.writeShort(0); // no instructions, no components
+		}
+		return bytes.toByteArray();
+	}
+
+	private byte[] os2(FMetrics metrics) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+		DataOutputStream out = new DataOutputStream(bytes);
+		int em = Math.round(info.em);
+		out.writeShort(3); // version
+		out.writeShort(metrics.xAvgCharWidth);
+		out.writeShort(400); // usWeightClass: regular
+		out.writeShort(5); // usWidthClass: medium
+		out.writeShort(0); // fsType: installable embedding
+		out.writeShort(em * 65 / 100); // ySubscriptXSize
+		out.writeShort(em * 70 / 100); // ySubscriptYSize
+		out.writeShort(0); // ySubscriptXOffset
+		out.writeShort(em * 14 / 100); // ySubscriptYOffset
+		out.writeShort(em * 65 / 100); // ySuperscriptXSize
+		out.writeShort(em * 70 / 100); // ySuperscriptYSize
+		out.writeShort(0); // ySuperscriptXOffset
+		out.writeShort(em * 48 / 100); // ySuperscriptYOffset
+		out.writeShort(em * 5 / 100); // yStrikeoutSize
+		out.writeShort(Math.round(info.xHeight / 2)); // yStrikeoutPosition
+		out.writeShort(0); // sFamilyClass
+		out.write(new byte[10]); // panose
+		out.writeInt(metrics.unicodeRange1);
+		out.writeInt(metrics.unicodeRange2);
+		out.writeInt(0); // ulUnicodeRange3
+		out.writeInt(0); // ulUnicodeRange4
+		out.writeBytes("NONE"); // achVendID
+		out.writeShort(0x0040); // fsSelection: regular
+		out.writeShort(metrics.firstCharIndex);
+		out.writeShort(metrics.lastCharIndex);
+		out.writeShort(ascender(metrics)); // sTypoAscender
+		out.writeShort(-descender(metrics)); // sTypoDescender
+		out.writeShort(lineGap()); // sTypoLineGap
+		out.writeShort(ascender(metrics)); // usWinAscent
+		out.writeShort(descender(metrics)); // usWinDescent
+		out.writeInt(1); // ulCodePageRange1: Latin 1
+		out.writeInt(0); // ulCodePageRange2
+		out.writeShort(Math.round(info.xHeight)); // sxHeight
+		out.writeShort(Math.round(info.ascender)); // sCapHeight
+		out.writeShort(0); // usDefaultChar
+		out.writeShort(' '); // usBreakChar
+		out.writeShort(0); // usMaxContext
+		return bytes.toByteArray();
+	}
+
+	private byte[] hmtx(FMetrics metrics) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(metrics.numGlyphs * 4);
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (int i = 0; i < metrics.numGlyphs; i++) {
+			if (i < metrics.numberOfHMetrics) {
+				out.writeShort(metrics.advanceWidths[i]);
+			}
+			out.writeShort(metrics.leftSideBearings[i]);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Creates a cmap with a format 4 subtable for the Basic Multilingual Plane,
+	 * referenced by the Unicode and the Windows Unicode BMP encoding records.
+	 * If there are characters outside the BMP, a format 12 subtable with all
+	 * characters is added for the Unicode full repertoire encoding records.
+	 */
+	private byte[] cmap(int[] codePoints) throws IOException {
+
+		FCmap cmap = lastCmap;
+		if (cmap != null && Arrays.equals(cmap.codePoints, codePoints)) {
+			return cmap.data;
+		}
+
+		byte[] data = buildCmap(codePoints);
+		lastCmap = new FCmap(codePoints, data);
+		return data;
+	}
+
+	private byte[] buildCmap(int[] codePoints) throws IOException {
+
+		// added glyphs replace the default glyphs of .null, CR and space
+		TreeMap<Integer, Integer> mapping = new TreeMap<Integer, Integer>();
+		mapping.put(0, 1);
+		mapping.put(13, 2);
+		mapping.put(32, 3);
+		for (int i = 4; i < codePoints.length; i++) {
+			int c = codePoints[i];
+			if (c >= 0) {
+				mapping.put(c, i);
+			}
+		}
+
+		// segments of consecutive characters mapped to consecutive glyphs
+
+		List<int[]> segments = new ArrayList<int[]>(); // start, end, delta
+		int[] segment = null;
+		for (Map.Entry<Integer, Integer> entry : mapping.entrySet()) {
+			int c = entry.getKey();
+			int delta = entry.getValue() - c;
+			if (segment != null && segment[1] == c - 1 && segment[2] == delta
+					&& (c <= 0xFFFF) == (segment[0] <= 0xFFFF)) {
+				segment[1] = c;
+			} else {
+				segment = new int[] { c, c, delta };
+				segments.add(segment);
+			}
+		}
+
+		byte[] format4 = cmapFormat4(segments);
+		byte[] format12 = mapping.lastKey() > 0xFFFF ? cmapFormat12(segments) : null;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(0); // version
+		if (format12 == null) {
+			out.writeShort(2); // numTables
+			out.writeShort(0); // Unicode
+			out.writeShort(3); // Unicode 2.0 BMP
+			out.writeInt(20);
+			out.writeShort(3); // Windows
+			out.writeShort(1); // Unicode BMP
+			out.writeInt(20);
+			out.write(format4);
+		} else {
+			int format12Offset = 36 + format4.length;
+			out.writeShort(4); // numTables
+			out.writeShort(0); // Unicode
+			out.writeShort(3); // Unicode 2.0 BMP
+			out.writeInt(36);
+			out.writeShort(0); // Unicode
+			out.writeShort(4); // Unicode 2.0 full repertoire
+			out.writeInt(format12Offset);
+			out.writeShort(3); // Windows
+			out.writeShort(1); // Unicode BMP
+			out.writeInt(36);
+			out.writeShort(3); // Windows
+			out.writeShort(10); // Unicode full repertoire
+			out.writeInt(format12Offset);
+			out.write(format4);
+			out.write(format12);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Creates a format 4 subtable (segment mapping to delta values) for the
+	 * segments within the Basic Multilingual Plane.
+	 */
+	private static byte[] cmapFormat4(List<int[]> segments) throws IOException {
+
+		List<int[]> bmpSegments = new ArrayList<int[]>();
+		for (int[] s : segments) {
+			if (s[1] < 0xFFFF) {
+				bmpSegments.add(s);
+			}
+		}
+		bmpSegments.add(new int[] { 0xFFFF, 0xFFFF, 1 });
+
+		int segCount = bmpSegments.size();
+		int searchRange = 2 * Integer.highestOneBit(segCount);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 8 * segCount);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(4); // format
+		out.writeShort(16 + 8 * segCount); // length
+		out.writeShort(0); // language
+		out.writeShort(2 * segCount);
+		out.writeShort(searchRange);
+		out.writeShort(Integer.numberOfTrailingZeros(searchRange / 2)); // entrySelector
+		out.writeShort(2 * segCount - searchRange); // rangeShift
+		for (int[] s : bmpSegments) {
+			out.writeShort(s[1]); // endCode
+		}
+		out.writeShort(0); // reservedPad
+		for (int[] s : bmpSegments) {
+			out.writeShort(s[0]); // startCode
+		}
+		for (int[] s : bmpSegments) {
+			out.writeShort(s[2]); // idDelta
+		}
+		for (int i = 0; i < segCount; i++) {
+			out.writeShort(0); // idRangeOffset
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Creates a format 12 subtable (segmented coverage) for all segments.
+	 */
+	private static byte[] cmapFormat12(List<int[]> segments) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + 12 * segments.size());
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(12); // format
+		out.writeShort(0); // reserved
+		out.writeInt(16 + 12 * segments.size()); // length
+		out.writeInt(0); // language
+		out.writeInt(segments.size()); // numGroups
+		for (int[] s : segments) {
+			out.writeInt(s[0]); // startCharCode
+			out.writeInt(s[1]); // endCharCode
+			out.writeInt(s[0] + s[2]); // startGlyphID
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param moreNames
+	 *            Names referred to by other tables, with IDs from
+	 *            FIRST_NAME_ID on.
+	 */
+	private byte[] name(String family, List<String> moreNames) throws IOException {
+
+		String fullName = "Regular".equals(info.subFamily) ? family : family + " " + info.subFamily;
+		String copyright = "\u00A9 Copyright " + info.copyrightYear
+				+ (info.author.length() > 0 ? ", " + info.author : "") + ".";
+
+		TreeMap<Integer, String> names = new TreeMap<Integer, String>();
+		names.put(0, copyright);
+		names.put(1, family);
+		names.put(2, info.subFamily);
+		names.put(3, "Fontastic: " + fullName + ": " + info.copyrightYear);
+		names.put(4, fullName);
+		names.put(5, "Version " + info.version);
+		names.put(6, postScriptName(fullName));
+		if (info.author.length() > 0) {
+			names.put(9, info.author);
+		}
+		if (info.typefaceLicense != null) {
+			names.put(13, info.typefaceLicense);
+		}
+		for (int i = 0; i < moreNames.size(); i++) {
+			names.put(FIRST_NAME_ID + i, moreNames.get(i));
+		}
+
+		ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(0); // format
+		out.writeShort(names.size());
+		out.writeShort(6 + 12 * names.size()); // stringOffset
+		for (Map.Entry<Integer, String> entry : names.entrySet()) {
+			byte[] string = entry.getValue().getBytes("UTF-16BE");
+			out.writeShort(3); // Windows
+			out.writeShort(1); // Unicode BMP
+			out.writeShort(0x0409); // English (US)
+			out.writeShort(entry.getKey());
+			out.writeShort(string.length);
+			out.writeShort(strings.size());
+			strings.write(string);
+		}
+		strings.writeTo(out);
+		return bytes.toByteArray();
+	}
+
+	private byte[] post() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0x00030000); // version 3.0, no glyph names
+		out.writeInt(0); // italicAngle
+		out.writeShort(-Math.round(info.em * 0.075f)); // underlinePosition
+		out.writeShort(Math.round(info.em * 0.05f)); // underlineThickness
+		out.writeInt(0); // isFixedPitch
+		out.writeInt(0); // minMemType42
+		out.writeInt(0); // maxMemType42
+		out.writeInt(0); // minMemType1
+		out.writeInt(0); // maxMemType1
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the table directory and the tables, and sets the checksums.
+	 */
+	private byte[] assemble(List<FTable> tables) throws IOException {
+
+		byte[] header = directory(tables);
+		FTable last = tables.get(tables.size() - 1);
+		byte[] font = new byte[last.offset + pad4(last.length)];
+		System.arraycopy(header, 0, font, 0, header.length);
+
+		FTable head = null;
+		for (FTable table : tables) {
+			System.arraycopy(table.data, 0, font, table.offset, table.data.length);
+			if (table.tag.equals("head")) {
+				head = table;
+			}
+		}
+
+		writeInt(font, head.offset + 8, CHECKSUM_MAGIC - checksum(font, 0, font.length));
+		return font;
+	}
+
+	/**
+	 * Sets the offsets of the tables and returns the offset table and the
+	 * table directory. The table records are sorted by tag, the table data
+	 * keeps the recommended order.
+	 */
+	private static byte[] directory(List<FTable> tables) {
+
+		TreeMap<String, FTable> directory = new TreeMap<String, FTable>();
+		int numTables = tables.size();
+		int offset = 12 + 16 * numTables;
+		for (FTable table : tables) {
+			table.offset = offset;
+			offset += pad4(table.length);
+			directory.put(table.tag, table);
+		}
+
+		byte[] header = new byte[12 + 16 * numTables];
+		int entrySelector = Integer.numberOfTrailingZeros(Integer.highestOneBit(numTables));
+		int searchRange = 16 << entrySelector;
+
+		int pos = 0;
+		pos = writeInt(header, pos, 0x00010000);
+		pos = writeShort(header, pos, numTables);
+		pos = writeShort(header, pos, searchRange);
+		pos = writeShort(header, pos, entrySelector);
+		pos = writeShort(header, pos, numTables * 16 - searchRange);
+		for (FTable table : directory.values()) {
+			for (int i = 0; i < 4; i++) {
+				header[pos++] = (byte) table.tag.charAt(i);
+			}
+			pos = writeInt(header, pos, table.checksum);
+			pos = writeInt(header, pos, table.offset);
+			pos = writeInt(header, pos, table.length);
+		}
+		return header;
+	}
+
+	private int ascender(FMetrics metrics) {
+		return Math.max(Math.round(info.ascender), metrics.yMax);
+	}
+
+	private int descender(FMetrics metrics) {
+		return Math.max(Math.round(info.descender), -metrics.yMin);
+	}
+
+	private int lineGap() {
+		return Math.round(info.topSideBearing + info.bottomSideBearing);
+	}
+
+	private static String postScriptName(String name) {
+		StringBuilder ps = new StringBuilder();
+		for (int i = 0; i < name.length() && ps.length() < 63; i++) {
+			char c = name.charAt(i);
+			if (c > 32 && c < 127 && "[](){}<>/%".indexOf(c) < 0) {
+				ps.append(c);
+			}
+		}
+		return ps.length() > 0 ? ps.toString() : "Fontastic";
+	}
+
+	private static void writeLocaEntry(DataOutputStream loca, int offset,
+			boolean shortLoca) throws IOException {
+		if (shortLoca) {
+			loca.writeShort(offset / 2);
+		} else {
+			loca.writeInt(offset);
+		}
+	}
+
+	static int checksum(byte[] data, int offset, int length) {
+		int sum = 0;
+		int end = offset + length;
+		for (int i = offset; i < end; i += 4) {
+			int word = 0;
+			for (int j = 0; j < 4; j++) {
+				word = (word << 8) | (i + j < end ? data[i + j] & 0xFF : 0);
+			}
+			sum += word;
+		}
+		return sum;
+	}
+
+	static int pad4(int length) {
+		return (length + 3) & ~3;
+	}
+
+	private static int writeShort(byte[] data, int pos, int value) {
+		data[pos] = (byte) (value >> 8);
+		data[pos + 1] = (byte) value;
+		return pos + 2;
+	}
+
+	private static int writeInt(byte[] data, int pos, int value) {
+		data[pos] = (byte) (value >> 24);
+		data[pos + 1] = (byte) (value >> 16);
+		data[pos + 2] = (byte) (value >> 8);
+		data[pos + 3] = (byte) value;
+		return pos + 4;
+	}
+
+	private static class FCmap {
+
+		final int[] codePoints;
+		final byte[] data;
+
+		FCmap(int[] codePoints, byte[] data) {
+			this.codePoints = codePoints;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * A table of the font file, in memory or in a file.
+	 */
+	private static class FTable {
+
+		String tag;
+		byte[] data;
+		FileChannel source;
+		int length;
+		int checksum;
+		int offset;
+
+		FTable(String tag, byte[] data) {
+			this.tag = tag;
+			this.data = data;
+			this.length = data.length;
+			this.checksum = FTrueTypeWriter.checksum(data, 0, data.length);
+		}
+
+		FTable(String tag, FileChannel source, int length, int checksum) {
+			this.tag = tag;
+			this.source = source;
+			this.length = length;
+			this.checksum = checksum;
+		}
+
+	}
+
+	/**
+	 * Font-wide metrics derived from the glyphs, and the few values per glyph
+	 * the tables other than glyf need. Glyphs are added one at a time, so the
+	 * compiled glyphs do not have to be kept.
+	 */
+	static class FMetrics {
+
+		int numGlyphs;
+		int numberOfHMetrics;
+		int xMin, yMin, xMax, yMax;
+		int advanceWidthMax;
+		int minLeftSideBearing, minRightSideBearing, xMaxExtent;
+		int xAvgCharWidth;
+		int maxPoints, maxContours;
+		int firstCharIndex = 0xFFFF, lastCharIndex;
+		int unicodeRange1, unicodeRange2;
+
+		/** Per glyph; offsets has an additional entry for the end of glyf after finish() */
+		int[] codePoints = new int[64];
+		int[] advanceWidths = new int[64];
+		int[] leftSideBearings = new int[64];
+		int[] offsets = new int[64];
+		int glyfLength;
+
+		private boolean hasOutlines;
+		private long widthSum;
+		private int widthCount;
+
+		void add(FCompiledGlyph glyph) {
+
+			if (numGlyphs == codePoints.length) {
+				int capacity = numGlyphs * 2;
+				codePoints = Arrays.copyOf(codePoints, capacity);
+				advanceWidths = Arrays.copyOf(advanceWidths, capacity);
+				leftSideBearings = Arrays.copyOf(leftSideBearings, capacity);
+				offsets = Arrays.copyOf(offsets, capacity);
+			}
+			int i = numGlyphs++;
+			codePoints[i] = glyph.codePoint;
+			advanceWidths[i] = glyph.advanceWidth;
+			leftSideBearings[i] = glyph.getLeftSideBearing();
+			offsets[i] = glyfLength;
+			glyfLength += pad4(glyph.data.length);
+
+			advanceWidthMax = Math.max(advanceWidthMax, glyph.advanceWidth);
+			if (glyph.advanceWidth > 0) {
+				widthSum += glyph.advanceWidth;
+				widthCount++;
+			}
+			maxPoints = Math.max(maxPoints, glyph.pointCount);
+			maxContours = Math.max(maxContours, glyph.contourCount);
+
+			if (!glyph.isEmpty()) {
+				int rsb = glyph.advanceWidth - glyph.xMax;
+				if (!hasOutlines) {
+					xMin = glyph.xMin;
+					yMin = glyph.yMin;
+					xMax = glyph.xMax;
+					yMax = glyph.yMax;
+					minLeftSideBearing = glyph.xMin;
+					minRightSideBearing = rsb;
+					xMaxExtent = glyph.xMax;
+					hasOutlines = true;
+				}
+				xMin = Math.min(xMin, glyph.xMin);
+				yMin = Math.min(yMin, glyph.yMin);
+				xMax = Math.max(xMax, glyph.xMax);
+				yMax = Math.max(yMax, glyph.yMax);
+				minLeftSideBearing = Math.min(minLeftSideBearing, glyph.xMin);
+				minRightSideBearing = Math.min(minRightSideBearing, rsb);
+				xMaxExtent = Math.max(xMaxExtent, glyph.xMax);
+			}
+
+			if (i >= 3) { // space and the added glyphs
+				int c = glyph.codePoint;
+				if (c >= 0) {
+					firstCharIndex = Math.min(firstCharIndex, c);
+					lastCharIndex = Math.max(lastCharIndex, Math.min(c, 0xFFFF));
+					if (c < 0x80) {
+						unicodeRange1 |= 1; // Basic Latin
+					} else if (c < 0x100) {
+						unicodeRange1 |= 2; // Latin-1 Supplement
+					} else if (c > 0xFFFF) {
+						unicodeRange2 |= 1 << 25; // Non-Plane 0
+					}
+				}
+			}
+		}
+
+		/**
+		 * Computes the values that depend on all glyphs, after the last glyph has been added.
+		 */
+		void finish() {
+
+			codePoints = Arrays.copyOf(codePoints, numGlyphs);
+			advanceWidths = Arrays.copyOf(advanceWidths, numGlyphs);
+			leftSideBearings = Arrays.copyOf(leftSideBearings, numGlyphs);
+			offsets = Arrays.copyOf(offsets, numGlyphs + 1);
+			offsets[numGlyphs] = glyfLength;
+
+			xAvgCharWidth = widthCount > 0 ? (int) (widthSum / widthCount) : 0;
+
+			// trailing glyphs with the same advance width share the last hMetric
+			numberOfHMetrics = numGlyphs;
+			while (numberOfHMetrics > 1
+					&& advanceWidths[numberOfHMetrics - 1] == advanceWidths[numberOfHMetrics - 2]) {
+				numberOfHMetrics--;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,500 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class FVariations
+ *
+ * Stores the axes and masters of a variable font and builds its fvar and gvar
+ * tables. The default master is the font itself; every other master is a set
+ * of glyphs at a location on the axes, with the same contours and points as
+ * the default glyphs. Every master also becomes a named instance.
+ *
+ * The deltas follow the variation model of fontTools: masters are sorted from
+ * the ones on a single axis to the ones on several axes, the region of every
+ * master is cut back at the masters between it and the default, and every
+ * delta only holds what the masters before it do not already contribute. So
+ * the font looks exactly like every master at its location and interpolates
+ * between them.
+ *
+ */
+class FVariations {
+
+	private List<FAxis> axes = new ArrayList<FAxis>();
+	private List<String> masterNames = new ArrayList<String>();
+	private List<float[]> masterLocations = new ArrayList<float[]>();
+	private List<Fontastic> masters = new ArrayList<Fontastic>();
+
+	/** Masters in the order of the model, and their regions [axis][start, peak, end] */
+	private int[] order;
+	private float[][][] supports;
+
+	void addAxis(FAxis axis) {
+		if (!masters.isEmpty())
+			throw new IllegalStateException("Axes must be added before the masters");
+		for (FAxis a : axes) {
+			if (a.tag.equals(axis.tag))
+				throw new IllegalArgumentException("There already is an axis " + axis.tag);
+		}
+		axes.add(axis);
+	}
+
+	/**
+	 * Adds a master. Like the VariationModel of fontTools, a master must be
+	 * within the range of every axis, not at the default location, which is
+	 * the font itself, and not at the location of another master.
+	 */
+	void addMaster(String name, float[] location, Fontastic master) {
+		if (location.length != axes.size())
+			throw new IllegalArgumentException("A master needs a value for each of the "
+					+ axes.size() + " axes");
+		boolean atDefault = true;
+		for (int a = 0; a < axes.size(); a++) {
+			FAxis axis = axes.get(a);
+			if (!(location[a] >= axis.minValue && location[a] <= axis.maxValue))
+				throw new IllegalArgumentException("Master " + name + ": " + location[a]
+						+ " is outside the range of axis " + axis.tag);
+			atDefault &= location[a] == axis.defaultValue;
+		}
+		if (atDefault)
+			throw new IllegalArgumentException("Master " + name
+					+ " is at the default location, which is the font itself");
+		for (int m = 0; m < masterLocations.size(); m++) {
+			if (Arrays.equals(masterLocations.get(m), location))
+				throw new IllegalArgumentException("Master " + name
+						+ " is at the same location as master " + masterNames.get(m));
+		}
+		masterNames.add(name);
+		masterLocations.add(location.clone());
+		masters.add(master);
+		order = null;
+	}
+
+	/**
+	 * Returns a copy with copies of the masters, see Fontastic.snapshot().
+	 */
+	FVariations snapshot() {
+		FVariations copy = new FVariations();
+		copy.axes.addAll(axes);
+		copy.masterNames.addAll(masterNames);
+		copy.masterLocations.addAll(masterLocations);
+		for (Fontastic master : masters) {
+			copy.masters.add(master.snapshot());
+		}
+		return copy;
+	}
+
+	List<FAxis> getAxes() {
+		return axes;
+	}
+
+	List<Fontastic> getMasters() {
+		return masters;
+	}
+
+	/**
+	 * Describes axes and masters for the build cache key. The glyphs of the
+	 * masters are added by the caller.
+	 */
+	String describe() {
+		StringBuilder description = new StringBuilder();
+		for (FAxis axis : axes) {
+			description.append(" axis ").append(axis.tag).append(' ').append(axis.name)
+					.append(' ').append(axis.minValue).append(' ').append(axis.defaultValue)
+					.append(' ').append(axis.maxValue);
+		}
+		for (int m = 0; m < masters.size(); m++) {
+			description.append(" master ").append(masterNames.get(m));
+			for (float value : masterLocations.get(m)) {
+				description.append(' ').append(value);
+			}
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Returns the names for the name table: the axis names, then the master
+	 * names. fvar refers to them with IDs from firstNameID on.
+	 */
+	List<String> names() {
+		List<String> names = new ArrayList<String>();
+		for (FAxis axis : axes) {
+			names.add(axis.name);
+		}
+		names.addAll(masterNames);
+		return names;
+	}
+
+	byte[] fvar(int firstNameID) throws IOException {
+		int axisCount = axes.size();
+		int instanceCount = masters.size() + 1;
+		int instanceSize = 4 + 4 * axisCount;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(1); // majorVersion
+		out.writeShort(0); // minorVersion
+		out.writeShort(16); // axesArrayOffset
+		out.writeShort(2); // reserved
+		out.writeShort(axisCount);
+		out.writeShort(20); // axisSize
+		out.writeShort(instanceCount);
+		out.writeShort(instanceSize);
+		for (int a = 0; a < axisCount; a++) {
+			FAxis axis = axes.get(a);
+			out.writeBytes(axis.tag);
+			out.writeInt(toFixed(axis.minValue));
+			out.writeInt(toFixed(axis.defaultValue));
+			out.writeInt(toFixed(axis.maxValue));
+			out.writeShort(0); // flags
+			out.writeShort(firstNameID + a);
+		}
+
+		// the default instance is named by the subfamily name
+		out.writeShort(2);
+		out.writeShort(0);
+		for (FAxis axis : axes) {
+			out.writeInt(toFixed(axis.defaultValue));
+		}
+		for (int m = 0; m < masters.size(); m++) {
+			out.writeShort(firstNameID + axisCount + m);
+			out.writeShort(0);
+			for (float value : masterLocations.get(m)) {
+				out.writeInt(toFixed(value));
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Builds the gvar table.
+	 * 
+	 * @param glyphs
+	 *            For every glyph of the font, the points of each master as
+	 *            returned by FGlyphCompiler.compileMasters() with the default
+	 *            master first, or null for glyphs that do not vary.
+	 */
+	byte[] gvar(List<int[][]> glyphs) throws IOException {
+
+		computeModel();
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] offsets = new int[glyphs.size() + 1];
+		for (int g = 0; g < glyphs.size(); g++) {
+			offsets[g] = data.size();
+			if (glyphs.get(g) != null) {
+				writeGlyphVariations(glyphs.get(g), new DataOutputStream(data));
+			}
+		}
+		offsets[glyphs.size()] = data.size();
+
+		int dataOffset = 20 + 4 * offsets.length;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(dataOffset + data.size());
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(1); // majorVersion
+		out.writeShort(0); // minorVersion
+		out.writeShort(axes.size());
+		out.writeShort(0); // sharedTupleCount
+		out.writeInt(dataOffset); // sharedTuplesOffset
+		out.writeShort(glyphs.size());
+		out.writeShort(1); // flags: long offsets
+		out.writeInt(dataOffset);
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		data.writeTo(out);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the variation data of a glyph: one tuple per master that changes
+	 * it, with deltas for all points.
+	 */
+	private void writeGlyphVariations(int[][] points, DataOutputStream out) throws IOException {
+
+		int axisCount = axes.size();
+		int[] base = points[0];
+		double[][] deltas = new double[masters.size()][];
+
+		ByteArrayOutputStream headers = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headers);
+		ByteArrayOutputStream tuples = new ByteArrayOutputStream();
+		int tupleCount = 0;
+
+		for (int k = 0; k < order.length; k++) {
+			int m = order[k];
+			int[] master = points[m + 1] != null ? points[m + 1] : base;
+			double[] delta = new double[base.length];
+			for (int i = 0; i < base.length; i++) {
+				delta[i] = master[i] - base[i];
+			}
+			for (int j = 0; j < k; j++) {
+				double scalar = scalar(order[k], supports[j]);
+				if (scalar != 0) {
+					for (int i = 0; i < base.length; i++) {
+						delta[i] -= scalar * deltas[j][i];
+					}
+				}
+			}
+
+			// rounded before the next masters subtract them, so the rounding errors do not add up
+			int n = base.length / 2;
+			int[] xs = new int[n], ys = new int[n];
+			boolean changes = false;
+			for (int i = 0; i < n; i++) {
+				xs[i] = (int) Math.round(delta[2 * i]);
+				ys[i] = (int) Math.round(delta[2 * i + 1]);
+				delta[2 * i] = xs[i];
+				delta[2 * i + 1] = ys[i];
+				changes |= xs[i] != 0 || ys[i] != 0;
+			}
+			deltas[k] = delta;
+			if (!changes)
+				continue;
+
+			ByteArrayOutputStream tuple = new ByteArrayOutputStream();
+			packDeltas(xs, new DataOutputStream(tuple));
+			packDeltas(ys, new DataOutputStream(tuple));
+
+			float[][] support = supports[k];
+			boolean intermediate = false;
+			for (float[] region : support) {
+				intermediate |= region[0] != Math.min(region[1], 0)
+						|| region[2] != Math.max(region[1], 0);
+			}
+			header.writeShort(tuple.size()); // variationDataSize
+			header.writeShort(0x8000 | (intermediate ? 0x4000 : 0)); // embedded peak tuple
+			for (int a = 0; a < axisCount; a++) {
+				header.writeShort(toF2Dot14(support[a][1]));
+			}
+			if (intermediate) {
+				for (int a = 0; a < axisCount; a++) {
+					header.writeShort(toF2Dot14(support[a][0]));
+				}
+				for (int a = 0; a < axisCount; a++) {
+					header.writeShort(toF2Dot14(support[a][2]));
+				}
+			}
+			tuple.writeTo(tuples);
+			tupleCount++;
+		}
+
+		if (tupleCount == 0)
+			return;
+
+		out.writeShort(0x8000 | tupleCount); // shared point numbers
+		out.writeShort(4 + headers.size()); // dataOffset
+		headers.writeTo(out);
+		out.writeByte(0); // shared point numbers: all points
+		tuples.writeTo(out);
+		if ((4 + headers.size() + 1 + tuples.size()) % 2 != 0) {
+			out.writeByte(0);
+		}
+	}
+
+	/**
+	 * Sorts the masters and computes their regions, like
+	 * fontTools.varLib.models.VariationModel.
+	 */
+	private void computeModel() {
+
+		if (order != null)
+			return;
+
+		int axisCount = axes.size();
+		final float[][] locations = new float[masters.size()][axisCount];
+		float[] minValues = new float[axisCount];
+		float[] maxValues = new float[axisCount];
+		for (int m = 0; m < masters.size(); m++) {
+			for (int a = 0; a < axisCount; a++) {
+				float v = axes.get(a).normalize(masterLocations.get(m)[a]);
+				locations[m][a] = v;
+				minValues[a] = Math.min(minValues[a], v);
+				maxValues[a] = Math.max(maxValues[a], v);
+			}
+		}
+
+		// masters on fewer axes first, and closer to the default first
+		List<Integer> sorted = new ArrayList<Integer>();
+		for (int m = 0; m < masters.size(); m++) {
+			sorted.add(m);
+		}
+		Collections.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer m1, Integer m2) {
+				float[] l1 = locations[m1], l2 = locations[m2];
+				int axes1 = 0, axes2 = 0;
+				for (int a = 0; a < l1.length; a++) {
+					axes1 += l1[a] != 0 ? 1 : 0;
+					axes2 += l2[a] != 0 ? 1 : 0;
+				}
+				if (axes1 != axes2)
+					return axes1 - axes2;
+				for (int a = 0; a < l1.length; a++) {
+					if ((l1[a] != 0) != (l2[a] != 0))
+						return l1[a] != 0 ? -1 : 1;
+				}
+				for (int a = 0; a < l1.length; a++) {
+					if (Math.signum(l1[a]) != Math.signum(l2[a]))
+						return Float.compare(Math.signum(l1[a]), Math.signum(l2[a]));
+					if (Math.abs(l1[a]) != Math.abs(l2[a]))
+						return Float.compare(Math.abs(l1[a]), Math.abs(l2[a]));
+				}
+				return 0;
+			}
+		});
+
+		order = new int[sorted.size()];
+		supports = new float[sorted.size()][][];
+		for (int k = 0; k < order.length; k++) {
+			int m = sorted.get(k);
+			order[k] = m;
+
+			float[][] region = new float[axisCount][];
+			for (int a = 0; a < axisCount; a++) {
+				float v = locations[m][a];
+				region[a] = v > 0 ? new float[] { 0, v, maxValues[a] }
+						: v < 0 ? new float[] { minValues[a], v, 0 } : new float[] { 0, 0, 0 };
+			}
+
+			// cut the region back at the masters before it on the same axes
+			for (int j = 0; j < k; j++) {
+				float[] previous = locations[order[j]];
+				boolean relevant = true;
+				for (int a = 0; a < axisCount && relevant; a++) {
+					float peak = region[a][1];
+					relevant = (previous[a] != 0) == (peak != 0)
+							&& (previous[a] == peak || (region[a][0] < previous[a] && previous[a] < region[a][2]));
+				}
+				if (!relevant)
+					continue;
+
+				float bestRatio = -1;
+				List<float[]> bestAxes = new ArrayList<float[]>();
+				for (int a = 0; a < axisCount; a++) {
+					float value = previous[a];
+					float lower = region[a][0], peak = region[a][1], upper = region[a][2];
+					float ratio;
+					float[] cut;
+					if (value < peak) {
+						ratio = (value - peak) / (lower - peak);
+						cut = new float[] { a, value, peak, upper };
+					} else if (value > peak) {
+						ratio = (value - peak) / (upper - peak);
+						cut = new float[] { a, lower, peak, value };
+					} else {
+						continue;
+					}
+					if (ratio > bestRatio) {
+						bestAxes.clear();
+						bestRatio = ratio;
+					}
+					if (ratio == bestRatio) {
+						bestAxes.add(cut);
+					}
+				}
+				for (float[] cut : bestAxes) {
+					region[(int) cut[0]] = new float[] { cut[1], cut[2], cut[3] };
+				}
+			}
+			supports[k] = region;
+		}
+	}
+
+	/**
+	 * Returns how much a region contributes at the location of a master.
+	 */
+	private float scalar(int master, float[][] support) {
+		float scalar = 1;
+		for (int a = 0; a < support.length; a++) {
+			float lower = support[a][0], peak = support[a][1], upper = support[a][2];
+			float v = axes.get(a).normalize(masterLocations.get(master)[a]);
+			if (peak == 0 || v == peak)
+				continue;
+			if (v <= lower || v >= upper)
+				return 0;
+			scalar *= v < peak ? (v - lower) / (peak - lower) : (v - upper) / (peak - upper);
+		}
+		return scalar;
+	}
+
+	/**
+	 * Writes deltas as runs of zeros, bytes or words of up to 64 values.
+	 */
+	private static void packDeltas(int[] deltas, DataOutputStream out) throws IOException {
+		int i = 0;
+		while (i < deltas.length) {
+			int run = 1;
+			if (deltas[i] == 0) {
+				while (run < 64 && i + run < deltas.length && deltas[i + run] == 0) {
+					run++;
+				}
+				out.writeByte(0x80 | (run - 1));
+			} else if (isByte(deltas[i])) {
+				while (run < 64 && i + run < deltas.length && deltas[i + run] != 0
+						&& isByte(deltas[i + run])) {
+					run++;
+				}
+				out.writeByte(run - 1);
+				for (int k = i; k < i + run; k++) {
+					out.writeByte(deltas[k]);
+				}
+			} else {
+				while (run < 64 && i + run < deltas.length && !isByte(deltas[i + run])) {
+					run++;
+				}
+				out.writeByte(0x40 | (run - 1));
+				for (int k = i; k < i + run; k++) {
+					out.writeShort(deltas[k]);
+				}
+			}
+			i += run;
+		}
+	}
+
+	private static boolean isByte(int value) {
+		return value >= -128 && value <= 127;
+	}
+
+	private static int toFixed(float value) {
+		return Math.round(value * 65536);
+	}
+
+	private static int toF2Dot14(float value) {
+		return Math.round(value * 16384);
+	}
+
+}
@@ -0,0 +1,365 @@
+package fontastic;
+
+/**
+ * Fontastic
+ * A font file writer to create TTF and WOFF (Webfonts).
+ * http://code.andreaskoller.com/libraries/fontastic
+ *
+ * Copyright (C) 2013 Andreas Koller http://andreaskoller.com
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General
+ * Public License along with this library; if not, write to the
+ * Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+ * Boston, MA  02111-1307  USA
+ *
+ * @author      Andreas Koller http://andreaskoller.com
+ * @modified    06/19/2013
+ * @version     0.4 (4)
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Class FWoff2Writer
+ *
+ * Converts a TrueType font to WOFF2 (https://www.w3.org/TR/WOFF2/). The glyf
+ * and loca tables are transformed: contour and point counts, flags and
+ * coordinates of all glyphs are stored in separate streams, the coordinates as
+ * variable length triplets, and loca is left out as the decoder rebuilds it.
+ * All tables are then compressed together with FBrotliEncoder.
+ *
+ * Fonts with composite glyphs keep glyf and loca untransformed.
+ *
+ */
+class FWoff2Writer {
+
+	private static final String[] KNOWN_TAGS = { "cmap", "head", "hhea", "hmtx", "maxp",
+			"name", "OS/2", "post", "cvt ", "fpgm", "glyf", "loca", "prep", "CFF ", "VORG",
+			"EBDT", "EBLC", "gasp", "hdmx", "kern", "LTSH", "PCLT", "VDMX", "vhea", "vmtx",
+			"BASE", "GDEF", "GPOS", "GSUB", "EBSC", "JSTF", "MATH", "CBDT", "CBLC", "COLR",
+			"CPAL", "SVG ", "sbix", "acnt", "avar", "bdat", "bloc", "bsln", "cvar", "fdsc",
+			"feat", "fmtx", "fvar", "gvar", "hsty", "just", "lcar", "mort", "morx", "opbd",
+			"prop", "trak", "Zapf", "Silf", "Glat", "Gloc", "Feat", "Sill" };
+
+	private static final int HEADER_SIZE = 48;
+
+	/** head.flags bit 11: the font has been converted losslessly */
+	private static final int LOSSLESS_TRANSFORM = 1 << 11;
+
+	/**
+	 * Returns ttf converted to WOFF2.
+	 * 
+	 * @throws IOException
+	 *             If ttf is not a valid TrueType font.
+	 */
+	static byte[] convert(byte[] ttf) throws IOException {
+
+		ByteBuffer font = ByteBuffer.wrap(ttf);
+		int numTables = font.getShort(4) & 0xFFFF;
+		TreeMap<String, byte[]> tables = new TreeMap<String, byte[]>();
+		for (int i = 0; i < numTables; i++) {
+			int record = 12 + 16 * i;
+			String tag = new String(ttf, record, 4, "ISO-8859-1");
+			int offset = font.getInt(record + 8);
+			int length = font.getInt(record + 12);
+			if (offset < 0 || length < 0 || offset + length > ttf.length)
+				throw new IOException("Table " + tag + " is outside the font");
+			tables.put(tag, Arrays.copyOfRange(ttf, offset, offset + length));
+		}
+
+		byte[] glyf = tables.get("glyf");
+		byte[] loca = tables.get("loca");
+		byte[] head = tables.get("head");
+		byte[] transformedGlyf = null;
+		if (glyf != null && loca != null && head != null && tables.containsKey("maxp")) {
+			int numGlyphs = ByteBuffer.wrap(tables.get("maxp")).getShort(4) & 0xFFFF;
+			int indexFormat = ByteBuffer.wrap(head).getShort(50);
+			transformedGlyf = transformGlyf(glyf, loca, numGlyphs, indexFormat);
+			if (transformedGlyf != null) {
+				head = head.clone();
+				int flags = ByteBuffer.wrap(head).getShort(16) | LOSSLESS_TRANSFORM;
+				head[16] = (byte) (flags >> 8);
+				head[17] = (byte) flags;
+				tables.put("head", head);
+			}
+		}
+
+		// tables sorted by tag, loca right after glyf
+
+		List<String> order = new ArrayList<String>(tables.keySet());
+		if (order.remove("loca")) {
+			order.add(order.indexOf("glyf") + 1, "loca");
+		}
+
+		ByteArrayOutputStream directory = new ByteArrayOutputStream();
+		ByteArrayOutputStream data = new ByteArrayOutputStream(ttf.length);
+		for (String tag : order) {
+			byte[] table = tables.get(tag);
+			boolean glyfOrLoca = tag.equals("glyf") || tag.equals("loca");
+			int known = Arrays.asList(KNOWN_TAGS).indexOf(tag);
+			// transform version 0 is the transform for glyf and loca, 3 their null transform
+			int transform = glyfOrLoca && transformedGlyf == null ? 3 : 0;
+			directory.write((transform << 6) | (known >= 0 ? known : 63));
+			if (known < 0) {
+				directory.write(tag.getBytes("ISO-8859-1"));
+			}
+			writeBase128(directory, table.length);
+			if (glyfOrLoca && transformedGlyf != null) {
+				byte[] transformed = tag.equals("glyf") ? transformedGlyf : new byte[0];
+				writeBase128(directory, transformed.length);
+				data.write(transformed);
+			} else {
+				data.write(table);
+			}
+		}
+
+		byte[] compressed = FBrotliEncoder.compress(data.toByteArray());
+		int length = HEADER_SIZE + directory.size() + compressed.length;
+		int paddedLength = FTrueTypeWriter.pad4(length);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(paddedLength);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeBytes("wOF2");
+		out.writeInt(font.getInt(0)); // flavor
+		out.writeInt(paddedLength);
+		out.writeShort(tables.size());
+		out.writeShort(0); // reserved
+		out.writeInt(ttf.length); // totalSfntSize
+		out.writeInt(compressed.length);
+		out.writeShort(1); // majorVersion
+		out.writeShort(0); // minorVersion
+		out.writeInt(0); // metaOffset
+		out.writeInt(0); // metaLength
+		out.writeInt(0); // metaOrigLength
+		out.writeInt(0); // privOffset
+		out.writeInt(0); // privLength
+		directory.writeTo(out);
+		out.write(compressed);
+		out.write(new byte[paddedLength - length]);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Returns the transformed glyf table, or null if the font has composite
+	 * glyphs.
+	 */
+	private static byte[] transformGlyf(byte[] glyf, byte[] loca, int numGlyphs,
+			int indexFormat) throws IOException {
+
+		ByteBuffer locaBuffer = ByteBuffer.wrap(loca);
+		ByteBuffer glyfBuffer = ByteBuffer.wrap(glyf);
+
+		ByteArrayOutputStream nContourStream = new ByteArrayOutputStream();
+		ByteArrayOutputStream nPointsStream = new ByteArrayOutputStream();
+		ByteArrayOutputStream flagStream = new ByteArrayOutputStream();
+		ByteArrayOutputStream glyphStream = new ByteArrayOutputStream();
+		ByteArrayOutputStream instructionStream = new ByteArrayOutputStream();
+		byte[] bboxBitmap = new byte[4 * ((numGlyphs + 31) / 32)];
+		ByteArrayOutputStream bboxes = new ByteArrayOutputStream();
+		DataOutputStream bboxStream = new DataOutputStream(bboxes);
+
+		int[] xs = new int[256], ys = new int[256];
+		byte[] flags = new byte[256];
+
+		for (int g = 0; g < numGlyphs; g++) {
+			int start = indexFormat == 0 ? (locaBuffer.getShort(2 * g) & 0xFFFF) * 2 : locaBuffer.getInt(4 * g);
+			int end = indexFormat == 0 ? (locaBuffer.getShort(2 * g + 2) & 0xFFFF) * 2 : locaBuffer.getInt(4 * g + 4);
+			if (end < start || end > glyf.length)
+				throw new IOException("Glyph " + g + " is outside the glyf table");
+
+			if (end == start) {
+				writeShort(nContourStream, 0);
+				continue;
+			}
+
+			int contours = glyfBuffer.getShort(start);
+			if (contours < 0)
+				return null;
+			writeShort(nContourStream, contours);
+
+			int pos = start + 10;
+			int pointCount = 0;
+			int lastEnd = -1;
+			for (int c = 0; c < contours; c++) {
+				int endPoint = glyfBuffer.getShort(pos) & 0xFFFF;
+				write255UShort(nPointsStream, endPoint - lastEnd);
+				lastEnd = endPoint;
+				pointCount = endPoint + 1;
+				pos += 2;
+			}
+			int instructionLength = glyfBuffer.getShort(pos) & 0xFFFF;
+			pos += 2;
+			instructionStream.write(glyf, pos, instructionLength);
+			pos += instructionLength;
+
+			if (pointCount > xs.length) {
+				xs = new int[pointCount];
+				ys = new int[pointCount];
+				flags = new byte[pointCount];
+			}
+
+			// flags, x and y coordinates of the simple glyph
+			for (int i = 0; i < pointCount;) {
+				byte flag = glyf[pos++];
+				int repeat = (flag & 0x08) != 0 ? glyf[pos++] & 0xFF : 0;
+				for (int k = 0; k <= repeat && i < pointCount; k++) {
+					flags[i++] = flag;
+				}
+			}
+			int x = 0;
+			for (int i = 0; i < pointCount; i++) {
+				if ((flags[i] & 0x02) != 0) {
+					int dx = glyf[pos++] & 0xFF;
+					x += (flags[i] & 0x10) != 0 ? dx : -dx;
+				} else if ((flags[i] & 0x10) == 0) {
+					x += glyfBuffer.getShort(pos);
+					pos += 2;
+				}
+				xs[i] = x;
+			}
+			int y = 0;
+			for (int i = 0; i < pointCount; i++) {
+				if ((flags[i] & 0x04) != 0) {
+					int dy = glyf[pos++] & 0xFF;
+					y += (flags[i] & 0x20) != 0 ? dy : -dy;
+				} else if ((flags[i] & 0x20) == 0) {
+					y += glyfBuffer.getShort(pos);
+					pos += 2;
+				}
+				ys[i] = y;
+			}
+
+			int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+			int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+			int lastX = 0, lastY = 0;
+			for (int i = 0; i < pointCount; i++) {
+				writeTriplet(flagStream, glyphStream, (flags[i] & 0x01) != 0, xs[i] - lastX, ys[i] - lastY);
+				lastX = xs[i];
+				lastY = ys[i];
+				xMin = Math.min(xMin, xs[i]);
+				yMin = Math.min(yMin, ys[i]);
+				xMax = Math.max(xMax, xs[i]);
+				yMax = Math.max(yMax, ys[i]);
+			}
+			write255UShort(glyphStream, instructionLength);
+
+			// the bounding box is only stored if it is not the one of the points
+			if (pointCount == 0 || xMin != glyfBuffer.getShort(start + 2) || yMin != glyfBuffer.getShort(start + 4)
+					|| xMax != glyfBuffer.getShort(start + 6) || yMax != glyfBuffer.getShort(start + 8)) {
+				bboxBitmap[g >> 3] |= 0x80 >> (g & 7);
+				bboxStream.write(glyf, start + 2, 8);
+			}
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeShort(0); // reserved
+		out.writeShort(0); // optionFlags
+		out.writeShort(numGlyphs);
+		out.writeShort(indexFormat);
+		out.writeInt(nContourStream.size());
+		out.writeInt(nPointsStream.size());
+		out.writeInt(flagStream.size());
+		out.writeInt(glyphStream.size());
+		out.writeInt(0); // compositeStreamSize
+		out.writeInt(bboxBitmap.length + bboxes.size());
+		out.writeInt(instructionStream.size());
+		nContourStream.writeTo(out);
+		nPointsStream.writeTo(out);
+		flagStream.writeTo(out);
+		glyphStream.writeTo(out);
+		out.write(bboxBitmap);
+		bboxes.writeTo(out);
+		instructionStream.writeTo(out);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes a point as a flag and 1 to 4 bytes of coordinate deltas, as
+	 * defined by the triplet encoding of WOFF2.
+	 */
+	private static void writeTriplet(ByteArrayOutputStream flags, ByteArrayOutputStream glyphs,
+			boolean onCurve, int x, int y) {
+		int absX = Math.abs(x), absY = Math.abs(y);
+		int onCurveBit = onCurve ? 0 : 128;
+		int xSignBit = x < 0 ? 0 : 1;
+		int ySignBit = y < 0 ? 0 : 1;
+		int signBits = xSignBit + 2 * ySignBit;
+
+		if (x == 0 && absY < 1280) {
+			flags.write(onCurveBit + ((absY & 0xF00) >> 7) + ySignBit);
+			glyphs.write(absY & 0xFF);
+		} else if (y == 0 && absX < 1280) {
+			flags.write(onCurveBit + 10 + ((absX & 0xF00) >> 7) + xSignBit);
+			glyphs.write(absX & 0xFF);
+		} else if (absX < 65 && absY < 65) {
+			flags.write(onCurveBit + 20 + ((absX - 1) & 0x30) + (((absY - 1) & 0x30) >> 2) + signBits);
+			glyphs.write((((absX - 1) & 0xF) << 4) | ((absY - 1) & 0xF));
+		} else if (absX < 769 && absY < 769) {
+			flags.write(onCurveBit + 84 + 12 * (((absX - 1) & 0x300) >> 8)
+					+ (((absY - 1) & 0x300) >> 6) + signBits);
+			glyphs.write((absX - 1) & 0xFF);
+			glyphs.write((absY - 1) & 0xFF);
+		} else if (absX < 4096 && absY < 4096) {
+			flags.write(onCurveBit + 120 + signBits);
+			glyphs.write(absX >> 4);
+			glyphs.write(((absX & 0xF) << 4) | (absY >> 8));
+			glyphs.write(absY & 0xFF);
+		} else {
+			flags.write(onCurveBit + 124 + signBits);
+			glyphs.write(absX >> 8);
+			glyphs.write(absX & 0xFF);
+			glyphs.write(absY >> 8);
+			glyphs.write(absY & 0xFF);
+		}
+	}
+
+	private static void write255UShort(ByteArrayOutputStream out, int value) {
+		if (value < 253) {
+			out.write(value);
+		} else if (value < 506) {
+			out.write(255);
+			out.write(value - 253);
+		} else if (value < 762) {
+			out.write(254);
+			out.write(value - 506);
+		} else {
+			out.write(253);
+			out.write(value >> 8);
+			out.write(value & 0xFF);
+		}
+	}
+
+	private static void writeBase128(ByteArrayOutputStream out, int value) {
+		int bytes = 1;
+		while (bytes < 5 && value >>> (7 * bytes) != 0) {
+			bytes++;
+		}
+		for (int i = bytes - 1; i >= 0; i--) {
+			out.write(((value >>> (7 * i)) & 0x7F) | (i > 0 ? 0x80 : 0));
+		}
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value >> 8);
+		out.write(value);
+	}
+
+}
@@ -48,12 +48,22 @@ import com.google.typography.font.sfntly.data.WritableFontData;
 import com.google.typography.font.tools.conversion.woff.WoffWriter;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Fontastic A font file writer to create TTF and WOFF (Webfonts). http://code.andreaskoller.com/libraries/fontastic
@@ -62,23 +72,63 @@ import java.util.regex.Matcher;
 public class Fontastic {
 
 	private PApplet myParent;
+	private File fontDirectory;
+	private FTemplate template;
+	private Map<String, String> templateVariables = new HashMap<String, String>();
+
+	/** template.html of every sketch, loaded once */
+	private static final Map<PApplet, FTemplate> sketchTemplates = new WeakHashMap<PApplet, FTemplate>();
+
+	/** Threads of buildFontAsync() */
+	private static final ExecutorService buildExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Fontastic build");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** doubletype has one engine for all fonts, see engine() */
+	private static final ReentrantLock engineLock = new ReentrantLock();
 
 	private org.doubletype.ossa.module.TypefaceFile typeface;
-	private org.doubletype.ossa.Engine m_engine;
+	/** Set after typeface, an async build may hand it over, see adoptTypeface() */
+	private volatile org.doubletype.ossa.Engine m_engine;
+	private boolean typefaceOutdated = true;
 
 	private String fontname;
 
 	private String TTFfilename;
 	private String WOFFfilename;
+	private String WOFF2filename;
 	private String HTMLfilename;
 	
-	private List<FGlyph> glyphs;
+	private FGlyphStore glyphs;
 
 	private int advanceWidth = 512;
 
+	private FFontInfo info = new FFontInfo();
+	private boolean inMemoryBuild = false;
+	private int parallelism = 1;
+	private float curveTolerance = FCubicConverter.NO_TOLERANCE;
+	private float simplifyTolerance = 0;
+	private int pointsRemoved;
+	private int bytesSaved;
+	private ForkJoinPool compilePool;
+	private FBuildCache buildCache;
+	private FVariations variations;
+	private EnumSet<Format> outputFormats = EnumSet.of(Format.TTF, Format.WOFF);
+	private FBuildListener buildListener;
+
 	public final static String VERSION = "0.4";
 	private boolean debug = true; // debug toggles println calls
 
+	/** Output formats of buildFont() and buildFontBytes() **/
+	public enum Format {
+		TTF, WOFF, WOFF2
+	}
+
 	/** Uppercase alphabet 26 characters **/
 	public final static char alphabet[] = { 'A', 'B', 'C', 'D', 'E', 'F', 'G',
 			'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T',
@@ -109,10 +159,122 @@ public class Fontastic {
 	 * 
 	 */
 	public Fontastic(PApplet myParent, String fontname) {
+		this(fontname, prepareSketchFolder(myParent, fontname));
 		this.myParent = myParent;
+	}
+
+	/**
+	 * Constructor for building fonts without a Processing sketch, e.g. in a
+	 * server. The font files are written to the folder bin in fontDirectory,
+	 * which is created if it does not exist. Use setTemplate() to also write a
+	 * HTML template.
+	 * 
+	 * @example Fontastic f = new Fontastic("MyFont", new File("fonts/MyFont"));
+	 * 
+	 * @param fontname
+	 *            Font name
+	 * @param fontDirectory
+	 *            Folder for the glyph files and the font files
+	 */
+	public Fontastic(String fontname, File fontDirectory) {
 		this.fontname = fontname;
+		this.fontDirectory = fontDirectory;
+		this.glyphs = new FGlyphStore();
 		intitialiseFont();
-		this.glyphs = new ArrayList<FGlyph>();
+	}
+
+	/**
+	 * Constructor for building fonts in memory only, without a Processing
+	 * sketch and without writing any files. Use buildFontBytes() to get the
+	 * font.
+	 * 
+	 * @example Fontastic f = new Fontastic("MyFont");
+	 *          byte[] woff = f.buildFontBytes(Fontastic.Format.WOFF);
+	 * 
+	 * @param fontname
+	 *            Font name
+	 */
+	public Fontastic(String fontname) {
+		this(fontname, (File) null);
+		this.inMemoryBuild = true;
+	}
+
+	/**
+	 * Creates an in-memory font with the same names, metrics and build
+	 * settings as this font, but without glyphs. Used by FFamilyBuilder for
+	 * the variants of a family.
+	 */
+	Fontastic newVariant(String fontname) {
+		Fontastic variant = new Fontastic(fontname);
+		variant.info = info.copy();
+		variant.info.fontFamilyName = fontname;
+		variant.advanceWidth = advanceWidth;
+		variant.curveTolerance = curveTolerance;
+		variant.simplifyTolerance = simplifyTolerance;
+		variant.outputFormats = EnumSet.copyOf(outputFormats);
+		variant.debug = false;
+		return variant;
+	}
+
+	/**
+	 * Returns a copy of the font with snapshots of its glyphs and copies of
+	 * its names, metrics and settings, so this font can be changed while the
+	 * copy is built on another thread. Only glyphs that have changed since the
+	 * last snapshot are copied. The copy writes the same files and shares the build
+	 * cache and the doubletype typeface, which is only used while holding
+	 * engineLock. A typeface the copy creates is handed back with
+	 * adoptTypeface().
+	 */
+	Fontastic snapshot() {
+		Fontastic copy = new Fontastic(fontname, (File) null);
+		copy.myParent = myParent;
+		copy.fontDirectory = fontDirectory;
+		copy.TTFfilename = TTFfilename;
+		copy.WOFFfilename = WOFFfilename;
+		copy.WOFF2filename = WOFF2filename;
+		copy.HTMLfilename = HTMLfilename;
+		copy.template = template;
+		copy.templateVariables = new HashMap<String, String>(templateVariables);
+		copy.m_engine = m_engine;
+		copy.typeface = typeface;
+		copy.typefaceOutdated = typefaceOutdated;
+		copy.advanceWidth = advanceWidth;
+		copy.info = info.copy();
+		copy.inMemoryBuild = inMemoryBuild;
+		copy.parallelism = parallelism;
+		copy.curveTolerance = curveTolerance;
+		copy.simplifyTolerance = simplifyTolerance;
+		copy.buildCache = buildCache;
+		copy.variations = variations != null ? variations.snapshot() : null;
+		copy.outputFormats = EnumSet.copyOf(outputFormats);
+		copy.buildListener = buildListener;
+		copy.debug = debug;
+		copy.glyphs = glyphs.snapshot();
+		return copy;
+	}
+
+	/**
+	 * Takes over the doubletype typeface a snapshot has created, so the next
+	 * build of this font does not create it again. The names and metrics are
+	 * still applied again, they may have changed since the snapshot.
+	 */
+	private void adoptTypeface(Fontastic snapshot) {
+		engineLock.lock();
+		try {
+			if (m_engine == null && snapshot.m_engine != null) {
+				typeface = snapshot.typeface;
+				m_engine = snapshot.m_engine;
+			}
+		} finally {
+			engineLock.unlock();
+		}
+	}
+
+	/**
+	 * Names and metrics of the font, shared with FFamilyBuilder.
+	 */
+	FFontInfo getInfo() {
+		return info;
 	}
 
 	/**
@@ -125,10 +287,10 @@ public class Fontastic {
 	}
 
 	/**
-	 * Creates and initialises a new typeface. Font data is put into sketch
-	 * folder data/fontname.
+	 * Creates the sketch folder data/fontname, or deletes its contents if it
+	 * already exists.
 	 */
-	private void intitialiseFont() {
+	private static File prepareSketchFolder(PApplet myParent, String fontname) {
 		File data_dir = new File(myParent.dataPath(""));
 		if (!data_dir.exists()) {
 			data_dir.mkdir();
@@ -140,127 +302,885 @@ public class Fontastic {
 		} else {
 			deleteFolderContents(a_dir, false);
 		}
+		return a_dir;
+	}
 
-		m_engine = Engine.getSingletonInstance();
-		m_engine.buildNewTypeface(fontname, a_dir);
+	/**
+	 * Initialises a new typeface. The doubletype engine is only created when
+	 * it is needed, see engine().
+	 */
+	private void intitialiseFont() {
 
 		this.setFontFamilyName(fontname);
 		this.setVersion("CC BY-SA 3.0 http://creativecommons.org/licenses/by-sa/3.0/"); // default
 																						// license
 
-		String directoryName = a_dir + File.separator + "bin" + File.separator;
+		if (fontDirectory == null)
+			return;
+
+		fontDirectory.mkdirs();
+		String directoryName = fontDirectory + File.separator + "bin" + File.separator;
 
 		TTFfilename = directoryName + fontname + ".ttf";
 		WOFFfilename = directoryName + fontname + ".woff";
+		WOFF2filename = directoryName + fontname + ".woff2";
 		HTMLfilename = directoryName + "template.html";
 	}
 
+	/**
+	 * Returns the doubletype engine with the typeface of this font selected.
+	 * The typeface is created in the font directory the first time, and the
+	 * names and metrics are applied to it if they have changed since.
+	 * 
+	 * doubletype has a single engine for all fonts, so the caller must hold
+	 * engineLock as long as it uses the engine.
+	 */
+	private Engine engine() {
+		if (fontDirectory == null)
+			throw new IllegalStateException(
+					"doubletype needs a font directory, use setInMemoryBuild(true) or a constructor with a directory");
+
+		if (m_engine == null) {
+			m_engine = Engine.getSingletonInstance();
+			m_engine.buildNewTypeface(fontname, fontDirectory);
+			typeface = m_engine.getTypeface();
+		} else {
+			m_engine.setTypeface(typeface);
+		}
+
+		if (typefaceOutdated) {
+			applyInfo();
+			typefaceOutdated = false;
+		}
+		return m_engine;
+	}
+
+	/**
+	 * Applies the names and metrics set with the setters to the typeface.
+	 */
+	private void applyInfo() {
+		m_engine.setFontFamilyName(info.fontFamilyName);
+		typeface.setSubFamily(info.subFamily);
+		typeface.getGlyph().getHead().setVersion(info.version);
+		m_engine.setAuthor(info.author);
+		m_engine.setCopyrightYear(info.copyrightYear);
+		if (info.typefaceLicense != null)
+			m_engine.setTypefaceLicense(info.typefaceLicense);
+		if (info.baseline != 0)
+			m_engine.setBaseline(info.baseline);
+		if (info.meanline != 0)
+			m_engine.setMeanline(info.meanline);
+		m_engine.setAdvanceWidth(info.advanceWidth);
+		try {
+			// the ascender first, as the x-height must not be higher
+			typeface.setAscender(info.ascender);
+			typeface.setTopSideBearing(info.topSideBearing);
+			typeface.setXHeight(info.xHeight);
+			typeface.setDescender(info.descender);
+			typeface.setBottomSideBearing(info.bottomSideBearing);
+		} catch (OutOfRangeException e) {
+			// the metrics have been checked by FFontInfo already
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Builds the font and writes the .ttf and the .woff file as well as a HTML template for previewing the WOFF.
+	 * Other formats can be selected with setOutputFormats().
 	 * If debug is set (default is true) then you'll see the .ttf and .woff file name in the console.
+	 * 
+	 * The files are written on background threads while the next format is
+	 * encoded, each to a temporary file that is renamed when it is complete.
+	 * 
+	 * @return The written files with their sizes and write times, or null if
+	 *         the font could not be built.
 	 */
-	public void buildFont() {
+	public FBuildResult buildFont() {
+
+		if (fontDirectory == null) {
+			System.out.println("Error while building font: there is no font directory to write the files to, use buildFontBytes() instead.");
+			return null;
+		}
 		
-		// Create TTF file with doubletype
+		// Create TTF file, or take it from the build cache
+
+		String key = buildKey();
+		byte[] ttfBytes = getCached(key, Format.TTF);
+		boolean cached = ttfBytes != null;
+
+		if (!cached) {
+			ttfBytes = buildTrueType();
+			if (ttfBytes == null)
+				return null;
+			putCached(key, Format.TTF, ttfBytes);
+		}
+
+		FOutputWriter output = new FOutputWriter();
+		FStageTimer writeTimer = startStage(FBuildStage.WRITE);
+		if (!buildsInMemory() && !cached) {
+			output.add(new File(getTTFfilename()), Format.TTF);
+		} else if (outputFormats.contains(Format.TTF)) {
+			output.write(new File(getTTFfilename()), Format.TTF, ttfBytes);
+		}
+
+		// End TTF creation
 		
-		m_engine.addDefaultGlyphs();
+		// Create the WOFF and WOFF2 files from the TTF bytes
 
-		for (FGlyph glyph : glyphs) {
+		if (outputFormats.contains(Format.WOFF)) {
+			byte[] woffBytes = convert(key, ttfBytes, Format.WOFF);
+			if (woffBytes != null)
+				output.write(new File(getWOFFfilename()), Format.WOFF, woffBytes);
+		}
+		if (outputFormats.contains(Format.WOFF2)) {
+			byte[] woff2Bytes = convert(key, ttfBytes, Format.WOFF2);
+			if (woff2Bytes != null)
+				output.write(new File(getWOFF2filename()), Format.WOFF2, woff2Bytes);
+		}
 
-			GlyphFile glyphFile = m_engine.addNewGlyph(glyph.getGlyphChar());
-			glyphFile.setAdvanceWidth(glyph.getAdvanceWidth());
+		// End of WOFF creation
+		
+		// Create HTML Template for WOFF file
+		FTemplate htmlTemplate = getTemplate();
+		if (htmlTemplate != null) {
+			FStageTimer timer = startStage(FBuildStage.RENDER_TEMPLATE);
+			byte[] htmlBytes = htmlTemplate.render(templateValues(htmlTemplate));
+			timer.finish(htmlBytes.length, 0, 0);
+			output.write(new File(HTMLfilename), null, htmlBytes);
+		}
+		// End HTML Template
 
-			for (FContour contour : glyph.getContours()) {
+		FBuildResult result = output.finish();
+		long writtenBytes = 0;
+		for (FArtifact artifact : result.getArtifacts()) {
+			writtenBytes += artifact.getSize();
+		}
+		writeTimer.finish(writtenBytes, 0, 0);
+		if (debug) {
+			for (FArtifact artifact : result.getArtifacts()) {
+				if (artifact.getFormat() != null && artifact.isWritten())
+					System.out.println(artifact.getFormat() + " file created successfully: "
+							+ artifact.getFile());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the font like buildFont(), but on a background thread, so draw()
+	 * keeps running. The glyphs and settings are copied first, so they can be
+	 * changed for the next build while this one is running.
+	 * 
+	 * @example FBuildFuture build = f.buildFontAsync();
+	 * 
+	 * @return The build, which completes with the written files, or
+	 *         exceptionally if the font could not be built.
+	 */
+	public FBuildFuture buildFontAsync() {
+		return buildFontAsync(buildExecutor);
+	}
 
-				EContour econtour = new EContour();
-				econtour.setType(EContour.k_cubic);
+	/**
+	 * Builds the font like buildFont() with an executor, see
+	 * buildFontAsync().
+	 * 
+	 * @param executor
+	 *            Runs the build
+	 * 
+	 * @return The build, which completes with the written files, or
+	 *         exceptionally if the font could not be built.
+	 */
+	public FBuildFuture buildFontAsync(Executor executor) {
+		final Fontastic snapshot = snapshot();
+		final FBuildFuture future = new FBuildFuture(snapshot.stageCount());
+		snapshot.buildListener = future.listener(buildListener);
+
+		executor.execute(new Runnable() {
+			public void run() {
+				if (future.isDone())
+					return;
+				try {
+					FBuildResult result = snapshot.buildFont();
+					if (result != null)
+						future.complete(result);
+					else
+						future.completeExceptionally(new IOException("Font "
+								+ snapshot.getFontname() + " could not be built"));
+				} catch (CancellationException e) {
+					// the future has been cancelled already
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					adoptTypeface(snapshot);
+					if (snapshot.compilePool != null)
+						snapshot.compilePool.shutdown();
+				}
+			}
+		});
+		return future;
+	}
 
-				for (FPoint point : contour.points) {
+	/**
+	 * Returns the number of stages buildFont() reports if nothing is taken
+	 * from the build cache.
+	 */
+	private int stageCount() {
+		int stages = buildsInMemory() ? 2 : 3; // compile and assemble, or save, assemble and reload
+		if (outputFormats.contains(Format.WOFF))
+			stages++;
+		if (outputFormats.contains(Format.WOFF2))
+			stages++;
+		if (getTemplate() != null)
+			stages++;
+		return stages + 1; // write
+	}
 
-					EContourPoint e = new EContourPoint(point.x, point.y, true);
+	/**
+	 * Adds an axis to make this a variable font, e.g. weight or width. The
+	 * glyphs of this font are the default master, at the default value of
+	 * every axis; more masters are added with addMaster(). Variable fonts are
+	 * always built in memory.
+	 * 
+	 * @example f.addAxis("wght", "Weight", 100, 400, 900);
+	 * 
+	 * @param tag
+	 *            Four letter tag of the axis, e.g. wght, wdth, slnt or a custom
+	 *            tag in upper case.
+	 * @param name
+	 *            Name of the axis shown to the user
+	 * @param minValue
+	 *            Minimum value
+	 * @param defaultValue
+	 *            Value of the default master
+	 * @param maxValue
+	 *            Maximum value
+	 */
+	public void addAxis(String tag, String name, float minValue, float defaultValue,
+			float maxValue) {
+		if (variations == null)
+			variations = new FVariations();
+		variations.addAxis(new FAxis(tag, name, minValue, defaultValue, maxValue));
+	}
 
-					if (point.hasControlPoint1()) {
-						EControlPoint cp1 = new EControlPoint(true,
-								point.controlPoint1.x, point.controlPoint1.y);
-						e.setControlPoint1(cp1);
-					}
+	/**
+	 * Adds a master of a variable font at a location on the axes, and a named
+	 * instance for it. Add the glyphs of the master to the returned font: each
+	 * needs the same number of contours, points and control points as the
+	 * glyph of this font with the same character. Glyphs that a master does
+	 * not have do not change at its location.
+	 * 
+	 * @example Fontastic bold = f.addMaster("Bold", 700);
+	 *          bold.addGlyph('A', boldContoursOfA);
+	 * 
+	 * @param name
+	 *            Name of the instance, e.g. Bold
+	 * @param location
+	 *            Value of every axis, in the order the axes were added. It
+	 *            must be within the range of every axis, and neither the
+	 *            default location nor the location of another master,
+	 *            otherwise an IllegalArgumentException is thrown.
+	 * 
+	 * @return The master, to add glyphs to.
+	 */
+	public Fontastic addMaster(String name, float... location) {
+		if (variations == null)
+			throw new IllegalStateException("Add an axis before adding masters");
+		Fontastic master = newVariant(fontname + " " + name);
+		variations.addMaster(name, location, master);
+		return master;
+	}
+
+	/**
+	 * Opens a stream to build a font with a very large number of glyphs. The
+	 * glyphs are added to the stream instead of this font and are compiled
+	 * and released one by one, so memory use does not grow with the number of
+	 * glyphs. The stream uses the names, metrics and settings this font has
+	 * now; the TTF file is written by FFontStream.finish().
+	 * 
+	 * @example FFontStream stream = f.openStream();
+	 *          stream.addGlyph('A').addContour(points);
+	 *          stream.finish();
+	 * 
+	 * @return The stream, or null if its temporary file could not be created.
+	 */
+	public FFontStream openStream() {
+		if (fontDirectory == null)
+			throw new IllegalStateException("Fonts built in memory have no TTF file, use openStream(File)");
+		new File(getTTFfilename()).getParentFile().mkdirs();
+		return openStream(new File(getTTFfilename()));
+	}
+
+	/**
+	 * Opens a stream that writes the TTF file to ttfFile, see openStream().
+	 * 
+	 * @return The stream, or null if its temporary file could not be created.
+	 */
+	public FFontStream openStream(File ttfFile) {
+		try {
+			return new FFontStream(info.copy(), advanceWidth, curveTolerance, simplifyTolerance,
+					ttfFile);
+		} catch (IOException e) {
+			System.out.println("Error while creating the temporary file of the font stream.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the font and returns it as bytes instead of writing the .woff and
+	 * the HTML template, e.g. to send it over the network. With
+	 * setInMemoryBuild(true) nothing is written to disk at all.
+	 * 
+	 * @example byte[] woff = f.buildFontBytes(Fontastic.Format.WOFF);
+	 * 
+	 * @param format
+	 *            Format.TTF, Format.WOFF or Format.WOFF2
+	 * 
+	 * @return The font file as bytes, or null if the font could not be built.
+	 */
+	public byte[] buildFontBytes(Format format) {
+
+		String key = buildKey();
+		byte[] bytes = getCached(key, format);
+		if (bytes != null)
+			return bytes;
+
+		byte[] ttfBytes = format == Format.TTF ? null : getCached(key, Format.TTF);
+		if (ttfBytes == null) {
+			ttfBytes = buildTrueType();
+			putCached(key, Format.TTF, ttfBytes);
+		}
+		if (ttfBytes == null || format == Format.TTF)
+			return ttfBytes;
+
+		return convert(key, ttfBytes, format);
+	}
+
+	/**
+	 * Builds a font with only the glyphs of the characters in text, e.g. the
+	 * characters a web page uses. The default glyphs (.notdef, space) are
+	 * always in the font, characters without a glyph are left out.
+	 * 
+	 * Only the glyphs of the subset are compiled, and glyphs that have been
+	 * compiled by an earlier build are reused, so subsets can be built on
+	 * demand. Subsets are always built in memory.
+	 * 
+	 * @example byte[] woff = f.buildSubsetBytes("Hello World", Fontastic.Format.WOFF);
+	 * 
+	 * @param text
+	 *            The characters of the subset
+	 * @param format
+	 *            Format.TTF, Format.WOFF or Format.WOFF2
+	 * 
+	 * @return The font file as bytes, or null if the font could not be built.
+	 */
+	public byte[] buildSubsetBytes(String text, Format format) {
+		int[] codePoints = new int[text.codePointCount(0, text.length())];
+		for (int i = 0, offset = 0; i < codePoints.length; i++) {
+			codePoints[i] = text.codePointAt(offset);
+			offset += Character.charCount(codePoints[i]);
+		}
+		return buildSubsetBytes(codePoints, format);
+	}
+
+	/**
+	 * Builds a font with only the glyphs of the given code points, see
+	 * buildSubsetBytes(String, Format).
+	 * 
+	 * @param codePoints
+	 *            Unicode code points of the subset, in any order
+	 * @param format
+	 *            Format.TTF, Format.WOFF or Format.WOFF2
+	 * 
+	 * @return The font file as bytes, or null if the font could not be built.
+	 */
+	public byte[] buildSubsetBytes(int[] codePoints, Format format) {
+
+		List<FGlyph> subset = subsetGlyphs(codePoints);
+		String key = buildCache == null ? null : FBuildCache.key(subset, info,
+				buildSettings(" subset"));
+		byte[] bytes = getCached(key, format);
+		if (bytes != null)
+			return bytes;
+
+		byte[] ttfBytes = format == Format.TTF ? null : getCached(key, Format.TTF);
+		if (ttfBytes == null) {
+			ttfBytes = buildTrueTypeInMemory(subset);
+			putCached(key, Format.TTF, ttfBytes);
+		}
+		if (ttfBytes == null || format == Format.TTF)
+			return ttfBytes;
+
+		return convert(key, ttfBytes, format);
+	}
+
+	/**
+	 * Returns the glyphs of the code points in the order of their code
+	 * points, each glyph once.
+	 */
+	private List<FGlyph> subsetGlyphs(int[] codePoints) {
+		int[] sorted = codePoints.clone();
+		Arrays.sort(sorted);
+		List<FGlyph> subset = new ArrayList<FGlyph>();
+		for (int i = 0; i < sorted.length; i++) {
+			if (i > 0 && sorted[i] == sorted[i - 1])
+				continue;
+			FGlyph glyph = glyphs.get(sorted[i]);
+			if (glyph != null)
+				subset.add(glyph);
+		}
+		return subset;
+	}
+
+	/**
+	 * Sets the formats buildFont() writes (default is TTF and WOFF). The TTF
+	 * file is always written for fonts built with doubletype.
+	 * 
+	 * @example f.setOutputFormats(Fontastic.Format.WOFF, Fontastic.Format.WOFF2);
+	 * 
+	 * @param formats
+	 *            One or more of Format.TTF, Format.WOFF and Format.WOFF2
+	 */
+	public void setOutputFormats(Format... formats) {
+		if (formats.length == 0) {
+			System.out.println("Error while setting output formats: at least one format is needed.");
+			return;
+		}
+		outputFormats = EnumSet.copyOf(Arrays.asList(formats));
+	}
+
+	/**
+	 * Converts the TTF bytes to WOFF or WOFF2, or takes the file from the
+	 * build cache.
+	 */
+	private byte[] convert(String key, byte[] ttfBytes, Format format) {
+		byte[] bytes = getCached(key, format);
+		if (bytes != null)
+			return bytes;
+
+		long start = System.nanoTime();
+		FStageTimer timer = startStage(format == Format.WOFF2 ? FBuildStage.CONVERT_WOFF2
+				: FBuildStage.CONVERT_WOFF);
+		bytes = convert(ttfBytes, format);
+		if (bytes == null)
+			return null;
+		timer.finish(bytes.length, 0, 0);
+		if (debug)
+			System.out.println(format + " encoded in " + (System.nanoTime() - start) / 1000000
+					+ " ms (" + bytes.length + " bytes)");
+		putCached(key, format, bytes);
+		return bytes;
+	}
+
+	/**
+	 * Sets a listener that receives the time, size and allocations of every
+	 * stage of a build, e.g. FBuildStatistics. Without a listener (the
+	 * default), builds are not measured.
+	 * 
+	 * @param buildListener
+	 *            The listener, or null to stop measuring
+	 */
+	public void setBuildListener(FBuildListener buildListener) {
+		this.buildListener = buildListener;
+	}
+
+	/**
+	 * Starts measuring a stage for the build listener.
+	 */
+	private FStageTimer startStage(FBuildStage stage) {
+		return buildListener != null ? new FStageTimer(buildListener, fontname, stage)
+				: FStageTimer.NONE;
+	}
+
+	/**
+	 * Converts a TTF file to the given format.
+	 * 
+	 * @return The file as bytes, or null if it could not be converted.
+	 */
+	static byte[] convert(byte[] ttfBytes, Format format) {
+		switch (format) {
+		case WOFF:
+			return toWoff(ttfBytes);
+		case WOFF2:
+			return toWoff2(ttfBytes);
+		default:
+			return ttfBytes;
+		}
+	}
+
+	/**
+	 * Returns the key of the font in the build cache, or null if there is no
+	 * build cache.
+	 */
+	private String buildKey() {
+		if (buildCache == null)
+			return null;
+		return FBuildCache.key(glyphs, info, buildSettings(buildsInMemory() ? " in memory"
+				: " doubletype"));
+	}
+
+	/**
+	 * Returns everything besides the glyphs and names that changes the font
+	 * file, for the key in the build cache.
+	 */
+	private String buildSettings(String mode) {
+		String settings = "Fontastic " + VERSION + mode + " curve " + curveTolerance
+				+ " simplify " + simplifyTolerance;
+		if (variations != null) {
+			settings += variations.describe();
+			for (Fontastic master : variations.getMasters()) {
+				settings += " " + FBuildCache.key(master.glyphs, master.info, "");
+			}
+		}
+		return settings;
+	}
 
-					if (point.hasControlPoint2()) {
-						EControlPoint cp2 = new EControlPoint(false,
-								point.controlPoint2.x, point.controlPoint2.y);
-						e.setControlPoint2(cp2);
+	private byte[] getCached(String key, Format format) {
+		if (key == null)
+			return null;
+		byte[] bytes = buildCache.get(key, format);
+		if (bytes != null && debug)
+			System.out.println(format + " file taken from the build cache");
+		return bytes;
+	}
+
+	private void putCached(String key, Format format, byte[] bytes) {
+		if (key != null && bytes != null)
+			buildCache.put(key, format, bytes);
+	}
+
+	/**
+	 * Variable fonts are always built in memory, doubletype can not write them.
+	 */
+	private boolean buildsInMemory() {
+		return inMemoryBuild || variations != null;
+	}
+
+	/**
+	 * Builds the TrueType font in memory or with doubletype.
+	 * 
+	 * @return The TTF file as bytes, or null if it could not be built.
+	 */
+	private byte[] buildTrueType() {
+		if (buildsInMemory())
+			return buildTrueTypeInMemory(glyphs.getGlyphs());
+		return buildTrueTypeWithDoubletype();
+	}
+
+	/**
+	 * Creates the glyph files and the TTF file with doubletype, and reads the
+	 * TTF file back. Snapshots of the font write the same file, so it is read
+	 * before engineLock is released.
+	 * 
+	 * @return The TTF file as bytes, or null if it could not be read.
+	 */
+	private byte[] buildTrueTypeWithDoubletype() {
+
+		engineLock.lock();
+		try {
+			Engine engine = engine();
+			engine.addDefaultGlyphs();
+
+			FStageTimer timer = startStage(FBuildStage.SAVE_GLYPH_FILES);
+			FGlyphCompiler compiler = new FGlyphCompiler(curveTolerance, simplifyTolerance);
+			pointsRemoved = 0;
+			bytesSaved = 0;
+			int points = 0;
+
+			for (FGlyph glyph : glyphs) {
+
+				GlyphFile glyphFile = engine.addNewGlyph(glyph.getCodePoint());
+				glyphFile.setAdvanceWidth(glyph.getAdvanceWidth());
+
+				if (curveTolerance == FCubicConverter.NO_TOLERANCE && simplifyTolerance == 0) {
+					// doubletype converts the bezier curves itself
+					points += addCubicContours(glyph, glyphFile);
+					glyphFile.saveGlyphFile();
+					continue;
+				}
+
+				compiler.load(glyph);
+				pointsRemoved += compiler.getPointsRemoved();
+				bytesSaved += compiler.getBytesSaved();
+				points += compiler.pointCount;
+
+				int start = 0;
+				for (int c = 0; c < compiler.contourCount; c++) {
+
+					EContour econtour = new EContour();
+					econtour.setType(EContour.k_quadratic);
+
+					for (int i = start; i <= compiler.endPoints[c]; i++) {
+						econtour.addContourPoint(new EContourPoint(compiler.xs[i],
+								compiler.ys[i], compiler.onCurve[i]));
 					}
+					start = compiler.endPoints[c] + 1;
+
+					glyphFile.addContour(econtour);
+				}
+				glyphFile.saveGlyphFile();
+			}
+			timer.finish(0, glyphs.size(), points);
+			printSimplification();
+
+			timer = startStage(FBuildStage.ASSEMBLE);
+			engine.buildTrueType(false);
+			timer.finish(new File(getTTFfilename()).length(), glyphs.size(), points);
+
+			timer = startStage(FBuildStage.RELOAD);
+			byte[] ttfBytes = readFile(getTTFfilename());
+			if (ttfBytes != null)
+				timer.finish(ttfBytes.length, 0, 0);
+			return ttfBytes;
+		} finally {
+			engineLock.unlock();
+		}
+	}
+
+	/**
+	 * Compiles the glyphs directly into the tables of a TrueType font. No
+	 * glyph files are written.
+	 * 
+	 * @return The TTF file as bytes, or null if it could not be built.
+	 */
+	private byte[] buildTrueTypeInMemory(List<FGlyph> glyphs) {
 
-					econtour.addContourPoint(e);
+		try {
+			if (variations != null)
+				return buildVariableFont(glyphs);
+			return assemble(compileGlyphs(glyphs), null, null);
+		} catch (IOException e) {
+			System.out.println("Error while creating TTF File.");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the contours of a glyph with their bezier control points to a
+	 * doubletype glyph file.
+	 * 
+	 * @return The number of points
+	 */
+	private static int addCubicContours(FGlyph glyph, GlyphFile glyphFile) {
+		int points = 0;
+		for (FContour contour : glyph.getContours()) {
+
+			EContour econtour = new EContour();
+			econtour.setType(EContour.k_cubic);
+
+			contour.sync();
+			float[] coordinates = contour.coordinates;
+			float[] controlPoints = contour.controlPoints;
+
+			for (int i = 0; i < contour.pointCount; i++) {
+
+				EContourPoint e = new EContourPoint(coordinates[2 * i], coordinates[2 * i + 1], true);
+
+				if (contour.hasControlPoint1(i)) {
+					EControlPoint cp1 = new EControlPoint(true,
+							controlPoints[4 * i], controlPoints[4 * i + 1]);
+					e.setControlPoint1(cp1);
 				}
 
-				glyphFile.addContour(econtour);
+				if (contour.hasControlPoint2(i)) {
+					EControlPoint cp2 = new EControlPoint(false,
+							controlPoints[4 * i + 2], controlPoints[4 * i + 3]);
+					e.setControlPoint2(cp2);
+				}
+
+				econtour.addContourPoint(e);
 			}
-			glyphFile.saveGlyphFile();
+			points += contour.pointCount;
+
+			glyphFile.addContour(econtour);
 		}
+		return points;
+	}
+
+	/**
+	 * Compiles every glyph together with the same glyph of all masters, and
+	 * writes a font with the default glyphs and the deltas of the masters.
+	 */
+	private byte[] buildVariableFont(List<FGlyph> glyphs) throws IOException {
 
-		m_engine.buildTrueType(false);
+		FStageTimer timer = startStage(FBuildStage.COMPILE);
+		List<Fontastic> masters = variations.getMasters();
+		FGlyphCompiler compiler = new FGlyphCompiler(curveTolerance, 0);
+		List<FCompiledGlyph> compiledGlyphs = new ArrayList<FCompiledGlyph>(glyphs.size());
+		List<int[][]> points = new ArrayList<int[][]>(glyphs.size());
+
+		for (FGlyph glyph : glyphs) {
+			FGlyph[] glyphMasters = new FGlyph[masters.size() + 1];
+			glyphMasters[0] = glyph;
+			boolean varies = false;
+			for (int m = 0; m < masters.size(); m++) {
+				glyphMasters[m + 1] = masters.get(m).getGlyph(glyph.getCodePoint());
+				varies |= glyphMasters[m + 1] != null;
+			}
+			if (varies) {
+				int[][] glyphPoints = new int[glyphMasters.length][];
+				compiledGlyphs.add(compiler.compileMasters(glyphMasters, glyphPoints));
+				points.add(glyphPoints);
+			} else {
+				compiledGlyphs.add(compiler.compile(glyph));
+				points.add(null);
+			}
+		}
+		finishCompile(timer, compiledGlyphs);
 		if (debug)
-			System.out.println("TTF file created successfully: " + getTTFfilename());
+			System.out.println("Compiled " + glyphs.size() + " glyphs with " + masters.size()
+					+ " masters");
 
-		// End TTF creation
-		
-		// Create a WOFF file from this TTF file using sfntly
+		return assemble(compiledGlyphs, variations, points);
+	}
+
+	/**
+	 * Writes the tables of the TrueType font.
+	 */
+	private byte[] assemble(List<FCompiledGlyph> compiledGlyphs, FVariations variations,
+			List<int[][]> points) throws IOException {
+		FStageTimer timer = startStage(FBuildStage.ASSEMBLE);
+		byte[] ttfBytes = new FTrueTypeWriter(info).write(compiledGlyphs, info.fontFamilyName,
+				variations, points);
+		timer.finish(ttfBytes.length, compiledGlyphs.size(), 0);
+		return ttfBytes;
+	}
+
+	/**
+	 * Reports the compile stage with the size and points of the compiled
+	 * glyphs.
+	 */
+	private void finishCompile(FStageTimer timer, List<FCompiledGlyph> compiledGlyphs) {
+		if (buildListener == null)
+			return;
+		long bytes = 0;
+		int points = 0;
+		for (FCompiledGlyph compiledGlyph : compiledGlyphs) {
+			bytes += compiledGlyph.data.length;
+			points += compiledGlyph.pointCount;
+		}
+		timer.finish(bytes, compiledGlyphs.size(), points);
+	}
+
+	/**
+	 * Compiles all glyphs that have changed since the last build, on several
+	 * threads if parallelism is higher than 1. The other glyphs keep their
+	 * compiled form from the last build.
+	 * 
+	 * @return The compiled glyphs in the order of the glyphs.
+	 */
+	List<FCompiledGlyph> compileGlyphs() {
+		return compileGlyphs(glyphs.getGlyphs());
+	}
+
+	private List<FCompiledGlyph> compileGlyphs(List<FGlyph> glyphs) {
+
+		FStageTimer timer = startStage(FBuildStage.COMPILE);
+		FCompiledGlyph[] compiledGlyphs = new FCompiledGlyph[glyphs.size()];
+
+		int changedGlyphs = 0;
+		for (FGlyph glyph : glyphs) {
+			if (glyph.getCompiledGlyph() == null)
+				changedGlyphs++;
+		}
+
+		if (parallelism > 1 && changedGlyphs > FCompileTask.THRESHOLD) {
+			if (compilePool == null || compilePool.getParallelism() != parallelism) {
+				if (compilePool != null)
+					compilePool.shutdown();
+				compilePool = new ForkJoinPool(parallelism);
+			}
+			compilePool.invoke(new FCompileTask(glyphs, compiledGlyphs, 0, glyphs.size(),
+					curveTolerance, simplifyTolerance));
+		} else {
+			FGlyphCompiler compiler = new FGlyphCompiler(curveTolerance, simplifyTolerance);
+			for (int i = 0; i < compiledGlyphs.length; i++) {
+				compiledGlyphs[i] = compiler.compileIfChanged(glyphs.get(i));
+			}
+		}
+		finishCompile(timer, Arrays.asList(compiledGlyphs));
+		if (debug)
+			System.out.println("Compiled " + changedGlyphs + " of " + glyphs.size() + " glyphs");
 
-		FontFactory fontFactory = FontFactory.getInstance();
+		pointsRemoved = 0;
+		bytesSaved = 0;
+		for (FCompiledGlyph compiledGlyph : compiledGlyphs) {
+			pointsRemoved += compiledGlyph.pointsRemoved;
+			bytesSaved += compiledGlyph.bytesSaved;
+		}
+		printSimplification();
 
-		File fontFile = new File(getTTFfilename());
-		File outputFile = new File(WOFFfilename);
+		return Arrays.asList(compiledGlyphs);
+	}
 
-		byte[] fontBytes = new byte[0];
+	private void printSimplification() {
+		if (debug && simplifyTolerance > 0)
+			System.out.println("Outline simplification removed " + pointsRemoved
+					+ " points (" + bytesSaved + " bytes)");
+	}
+
+	/**
+	 * Converts a TTF file to WOFF using sfntly.
+	 * 
+	 * @return The WOFF file as bytes, or null if it could not be converted.
+	 */
+	static byte[] toWoff(byte[] ttfBytes) {
+
+		Font[] fontArray;
 		try {
-			FileInputStream fis = new FileInputStream(fontFile);
-			fontBytes = new byte[(int) fontFile.length()];
-			fis.read(fontBytes);
+			fontArray = FontFactory.getInstance().loadFonts(ttfBytes);
 		} catch (IOException e) {
 			System.out
-					.println("Error while creating WOFF File. TTF file not found: "
-							+ getTTFfilename());
+					.println("Error while creating WOFF File. TTF data could not be read.");
 			e.printStackTrace();
+			return null;
 		}
 
-		Font[] fontArray = null;
+		WritableFontData woffData = new WoffWriter().convert(fontArray[0]);
+		byte[] woffBytes = new byte[woffData.length()];
+		woffData.readBytes(0, woffBytes, 0, woffBytes.length);
+		return woffBytes;
+	}
+
+	/**
+	 * Converts a TTF file to WOFF2 with FWoff2Writer.
+	 * 
+	 * @return The WOFF2 file as bytes, or null if it could not be converted.
+	 */
+	static byte[] toWoff2(byte[] ttfBytes) {
 		try {
-			fontArray = fontFactory.loadFonts(fontBytes);
+			return FWoff2Writer.convert(ttfBytes);
 		} catch (IOException e) {
-			System.out
-					.println("Error while creating WOFF File. TTF file could not be read: "
-							+ getTTFfilename());
+			System.out.println("Error while creating WOFF2 File. TTF data could not be read.");
 			e.printStackTrace();
+			return null;
 		}
-		Font font = fontArray[0];
+	}
 
+	/**
+	 * Reads a whole file.
+	 * 
+	 * @return The file content, or null if the file could not be read.
+	 */
+	private byte[] readFile(String filename) {
 		try {
-			FileOutputStream fos = new FileOutputStream(outputFile);
-			WoffWriter w = new WoffWriter();
-			WritableFontData woffData = w.convert(font);
-			woffData.copyTo(fos);
-			if (debug)
-				System.out.println("WOFF File created successfully: "
-						+ getWOFFfilename());
+			FileChannel channel = new FileInputStream(filename).getChannel();
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer) < 0)
+						break;
+				}
+				return buffer.array();
+			} finally {
+				channel.close();
+			}
 		} catch (IOException e) {
-			System.out
-					.println("Error while creating WOFF File. WOFF file could not be written."
-							+ outputFile);
+			System.out.println("Error while reading file " + filename);
 			e.printStackTrace();
+			return null;
 		}
-
-		// End of WOFF creation
-		
-		// Create HTML Template for WOFF file
-		String htmlTemplate = myParent.join(myParent.loadStrings("template.html"), "\n");
-		Map<String, String> params = new HashMap<String, String>();
-		params.put("FONTNAME", fontname);
-		params.put("WOFFFILENAME", getFontname()+".woff");
-		String htmlContent = replaceAll(htmlTemplate, params);
-		
-		myParent.saveStrings(HTMLfilename, myParent.split(htmlContent, "\n"));
-		// End HTML Template
 	}
 
 	/**
@@ -269,13 +1189,20 @@ public class Fontastic {
 	 */
 	public void cleanup() {
 
-		File a_dir = new File(myParent.dataPath(fontname));
-		File[] filesToExclude = new File[3];
-		filesToExclude[0] = new File(getTTFfilename());
-		filesToExclude[1] = new File(getWOFFfilename());
-		filesToExclude[2] = new File(HTMLfilename);
+		if (fontDirectory != null) {
+			File[] filesToExclude = new File[4];
+			filesToExclude[0] = new File(getTTFfilename());
+			filesToExclude[1] = new File(getWOFFfilename());
+			filesToExclude[2] = new File(getWOFF2filename());
+			filesToExclude[3] = new File(HTMLfilename);
 
-		deleteFolderContents(a_dir, true, filesToExclude);
+			deleteFolderContents(fontDirectory, true, filesToExclude);
+		}
+
+		if (compilePool != null) {
+			compilePool.shutdown();
+			compilePool = null;
+		}
 		if (debug)
 			System.out
 					.println("Cleaned up and deleted all glyph files, except font files.");
@@ -286,21 +1213,24 @@ public class Fontastic {
 	 * Sets the author of the font.
 	 */
 	public void setAuthor(String author) {
-		m_engine.setAuthor(author);
+		typefaceOutdated = true;
+		info.author = author;
 	}
 
 	/**
 	 * Sets the copyright year of the font.
 	 */
 	public void setCopyrightYear(String copyrightYear) {
-		m_engine.setCopyrightYear(copyrightYear);
+		typefaceOutdated = true;
+		info.copyrightYear = copyrightYear;
 	}
 
 	/**
 	 * Sets the version of the font (default is "0.1").
 	 */
 	public void setVersion(String version) {
-		m_engine.getTypeface().getGlyph().getHead().setVersion(version);
+		typefaceOutdated = true;
+		info.version = version;
 	}
 
 	/**
@@ -309,14 +1239,16 @@ public class Fontastic {
 	 * stored in.
 	 */
 	public void setFontFamilyName(String fontFamilyName) {
-		m_engine.setFontFamilyName(fontFamilyName);
+		typefaceOutdated = true;
+		info.fontFamilyName = fontFamilyName;
 	}
 
 	/**
 	 * Sets the sub family of the font.
 	 */
 	public void setSubFamily(String subFamily) {
-		m_engine.getTypeface().setSubFamily(subFamily);
+		typefaceOutdated = true;
+		info.subFamily = subFamily;
 	}
 
 	/**
@@ -324,21 +1256,24 @@ public class Fontastic {
 	 * "CC BY-SA 3.0 http://creativecommons.org/licenses/by-sa/3.0/")
 	 */
 	public void setTypefaceLicense(String typefaceLicense) {
-		m_engine.setTypefaceLicense(typefaceLicense);
+		typefaceOutdated = true;
+		info.typefaceLicense = typefaceLicense;
 	}
 
 	/**
 	 * Sets the baseline of the font.
 	 */
 	public void setBaseline(float baseline) {
-		m_engine.setBaseline(baseline);
+		typefaceOutdated = true;
+		info.baseline = baseline;
 	}
 
 	/**
 	 * Sets the meanline of the font.
 	 */
 	public void setMeanline(float meanline) {
-		m_engine.setMeanline(meanline);
+		typefaceOutdated = true;
+		info.meanline = meanline;
 	}
 
 	/**
@@ -346,63 +1281,69 @@ public class Fontastic {
 	 * individually. Won't affect already created glyphs.
 	 */
 	public void setAdvanceWidth(int advanceWidth) {
-		m_engine.setAdvanceWidth(advanceWidth);
+		typefaceOutdated = true;
 		this.advanceWidth = advanceWidth;
+		info.advanceWidth = advanceWidth;
 	}
 
 	public void setTopSideBearing(float topSideBearing) {
 		try {
-			m_engine.getTypeface().setTopSideBearing(topSideBearing);
+			info.setTopSideBearing(topSideBearing);
+			typefaceOutdated = true;
 		} catch (OutOfRangeException e) {
 			System.out
 					.println("Error while setting aopSideBearing (must be within range "
-							+ m_engine.getTypeface().getEm());
+							+ info.em);
 			e.printStackTrace();
 		}
 	}
 
 	public void setBottomSideBearing(float bottomSideBearing) {
 		try {
-			m_engine.getTypeface().setBottomSideBearing(bottomSideBearing);
+			info.setBottomSideBearing(bottomSideBearing);
+			typefaceOutdated = true;
 		} catch (OutOfRangeException e) {
 			System.out
 					.println("Error while setting bottomSideBearing (must be within range "
-							+ m_engine.getTypeface().getEm());
+							+ info.em);
 			e.printStackTrace();
 		}
 	}
 
 	public void setAscender(float ascender) {
 		try {
-			m_engine.getTypeface().setAscender(ascender);
+			info.setAscender(ascender);
+			typefaceOutdated = true;
 		} catch (OutOfRangeException e) {
 			System.out
 					.println("Error while setting ascender (must be within range 0 to "
-							+ m_engine.getTypeface().getEm() + ")");
+							+ info.em + ")");
 			e.printStackTrace();
 		}
 	}
 
 	public void setDescender(float descender) {
 		try {
-			m_engine.getTypeface().setDescender(descender);
+			info.setDescender(descender);
+			typefaceOutdated = true;
 		} catch (OutOfRangeException e) {
 			System.out
 					.println("Error while setting descender (must be within range 0 to "
-							+ m_engine.getTypeface().getEm() + ")");
+							+ info.em + ")");
 			e.printStackTrace();
 		}
 	}
 
 	public void setXHeight(float xHeight) {
 		try {
-			m_engine.getTypeface().setXHeight(xHeight);
+			info.setXHeight(xHeight);
+			typefaceOutdated = true;
 		} catch (OutOfRangeException e) {
 			System.out
 					.println("Error while setting xHeight (must be within range 0 to "
-							+ m_engine.getTypeface().getEm()
+							+ info.em
 							+ " as well as lower than the ascender "
-							+ m_engine.getTypeface().getAscender() + ")");
+							+ info.ascender + ")");
 			e.printStackTrace();
 		}
 	}
@@ -414,7 +1355,8 @@ public class Fontastic {
 	 * 
 	 */
 	public void setDefaultMetrics() {
-		m_engine.getTypeface().setDefaultMetrics();
+		typefaceOutdated = true;
+		info.setDefaultMetrics();
 	}
 
 	/**
@@ -436,7 +1378,232 @@ public class Fontastic {
 	}
 
 	/**
-	 * Add a glyph
+	 * Sets the HTML template that buildFont() writes next to the font files
+	 * for previewing the WOFF. By default the template is template.html of the
+	 * sketch, without a sketch no template is written. These variables are
+	 * replaced:
+	 * 
+	 * %FONTNAME%, %TTFFILENAME%, %WOFFFILENAME%, %WOFF2FILENAME%, %GLYPHS%
+	 * (all characters of the font), %GLYPHCOUNT%, %ASCENDER%, %DESCENDER%,
+	 * %XHEIGHT%, %ADVANCEWIDTH%, %SAMPLETEXT% and the ones set with
+	 * setTemplateVariable().
+	 * 
+	 * @param template
+	 *            The HTML template, or null for the default
+	 */
+	public void setTemplate(String template) {
+		this.template = template != null ? new FTemplate(template) : null;
+	}
+
+	/**
+	 * Sets the HTML template, see setTemplate(String). A parsed template can
+	 * be shared by any number of fonts.
+	 * 
+	 * @param template
+	 *            The HTML template, or null for the default
+	 */
+	public void setTemplate(FTemplate template) {
+		this.template = template;
+	}
+
+	/**
+	 * Sets a variable of the HTML template, or replaces the value of one of
+	 * the variables set by Fontastic.
+	 * 
+	 * @example f.setTemplateVariable("SAMPLETEXT", "Sphinx of black quartz, judge my vow");
+	 * 
+	 * @param name
+	 *            Name of the variable, %name% in the template
+	 * @param value
+	 *            The value, or null to remove the variable
+	 */
+	public void setTemplateVariable(String name, String value) {
+		if (value != null)
+			templateVariables.put(name, value);
+		else
+			templateVariables.remove(name);
+	}
+
+	/**
+	 * Returns the HTML template set with setTemplate(), or template.html of
+	 * the sketch. template.html is read once per sketch.
+	 * 
+	 * @return The template, or null if there is none.
+	 */
+	private FTemplate getTemplate() {
+		if (template != null || myParent == null)
+			return template;
+		synchronized (sketchTemplates) {
+			if (!sketchTemplates.containsKey(myParent)) {
+				String[] lines = myParent.loadStrings("template.html");
+				sketchTemplates.put(myParent, lines != null ? new FTemplate(PApplet.join(lines,
+						"\n")) : null);
+			}
+			return sketchTemplates.get(myParent);
+		}
+	}
+
+	/**
+	 * Returns the values of the variables of the HTML template.
+	 */
+	private Map<String, String> templateValues(FTemplate template) {
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("FONTNAME", fontname);
+		values.put("TTFFILENAME", fontname + ".ttf");
+		values.put("WOFFFILENAME", fontname + ".woff");
+		values.put("WOFF2FILENAME", fontname + ".woff2");
+		values.put("GLYPHCOUNT", String.valueOf(glyphs.size()));
+		values.put("ASCENDER", String.valueOf(Math.round(info.ascender)));
+		values.put("DESCENDER", String.valueOf(Math.round(info.descender)));
+		values.put("XHEIGHT", String.valueOf(Math.round(info.xHeight)));
+		values.put("ADVANCEWIDTH", String.valueOf(advanceWidth));
+		values.put("SAMPLETEXT", "This is the font " + FTemplate.escapeHtml(fontname) + ".");
+		if (template.uses("GLYPHS")) {
+			StringBuilder characters = new StringBuilder(glyphs.size());
+			for (FGlyph glyph : glyphs) {
+				if (glyph.getCodePoint() >= 0)
+					characters.appendCodePoint(glyph.getCodePoint());
+			}
+			values.put("GLYPHS", FTemplate.escapeHtml(characters.toString()));
+		}
+		values.putAll(templateVariables);
+		return values;
+	}
+
+	/**
+	 * Sets whether the font is built in memory (default is false). If true,
+	 * buildFont() compiles the glyphs directly into the tables of the TrueType
+	 * font instead of writing a glyph file for every glyph and letting
+	 * doubletype read them back, which is a lot faster for fonts that are
+	 * rebuilt often.
+	 * 
+	 * Fonts built in memory don't share any state, so several Fontastic
+	 * objects can build their fonts at the same time on different threads.
+	 * doubletype has a single engine for all fonts, so doubletype builds are
+	 * done one after the other.
+	 * 
+	 * @param inMemoryBuild
+	 *            true or false
+	 */
+	public void setInMemoryBuild(boolean inMemoryBuild) {
+		this.inMemoryBuild = inMemoryBuild;
+	}
+
+	/**
+	 * Sets a cache for the built font files (default is none). If the glyphs,
+	 * names, metrics and settings of the font are the same as the ones of a
+	 * font in the cache, buildFont() and buildFontBytes() use the cached files
+	 * instead of building the font again. A cache can be shared by several
+	 * fonts.
+	 * 
+	 * @example f.setBuildCache(new FBuildCache(64 * 1024 * 1024));
+	 * 
+	 * @param buildCache
+	 *            The cache, or null to build every time
+	 */
+	public void setBuildCache(FBuildCache buildCache) {
+		this.buildCache = buildCache;
+	}
+
+	/**
+	 * Sets the number of threads used to compile the glyphs when the font is
+	 * built in memory (default is 1). The font is the same for any number of
+	 * threads. Has no effect on the doubletype build.
+	 * 
+	 * @example f.setParallelism(Runtime.getRuntime().availableProcessors());
+	 * 
+	 * @param parallelism
+	 *            Number of threads, 1 compiles all glyphs on the calling thread
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Converts the bezier curves of the glyphs to quadratic curves for
+	 * TrueType within a maximum distance in font units, see FCubicConverter.
+	 * Higher values need fewer points and make smaller font files, at the cost
+	 * of precision. By default (0) the curves are converted as before:
+	 * doubletype converts them itself, and the in-memory build splits every
+	 * bezier segment into two quadratic curves.
+	 * 
+	 * @example f.setCurveTolerance(1);
+	 * 
+	 * @param curveTolerance
+	 *            Maximum error in font units (1000 or 1024 units per em), 0
+	 *            for the default conversion. Negative, NaN and infinite values
+	 *            throw an IllegalArgumentException.
+	 */
+	public void setCurveTolerance(float curveTolerance) {
+		checkTolerance("Curve", curveTolerance);
+		if (curveTolerance != this.curveTolerance)
+			clearCompiledGlyphs();
+		this.curveTolerance = curveTolerance;
+	}
+
+	/**
+	 * Sets the tolerance in font units for simplifying the outlines before
+	 * they are written (default is 0, no simplification). Points within this
+	 * distance of the straight line between their neighbours are removed, as
+	 * well as duplicate points and contours without area. Useful for outlines
+	 * sampled at a fixed segment length, e.g. with geomerative.
+	 * 
+	 * @example f.setSimplifyTolerance(1);
+	 * 
+	 * @param simplifyTolerance
+	 *            Maximum distance in font units, 0 to keep all points.
+	 *            Negative, NaN and infinite values throw an
+	 *            IllegalArgumentException.
+	 */
+	public void setSimplifyTolerance(float simplifyTolerance) {
+		checkTolerance("Simplify", simplifyTolerance);
+		if (simplifyTolerance != this.simplifyTolerance)
+			clearCompiledGlyphs();
+		this.simplifyTolerance = simplifyTolerance;
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if a tolerance is negative, NaN or
+	 * infinite.
+	 */
+	private static void checkTolerance(String name, float tolerance) {
+		if (tolerance < 0 || Float.isNaN(tolerance) || Float.isInfinite(tolerance)) {
+			throw new IllegalArgumentException(name
+					+ " tolerance must be a finite number that is not negative: " + tolerance);
+		}
+	}
+
+	/**
+	 * Makes the next build compile all glyphs again, after a setting that
+	 * changes the compiled glyphs.
+	 */
+	private void clearCompiledGlyphs() {
+		glyphs.clearCompiledGlyphs();
+	}
+
+	/**
+	 * Returns the number of points removed by the outline simplification in
+	 * the last build.
+	 * 
+	 * @see #setSimplifyTolerance(float)
+	 */
+	public int getPointsRemoved() {
+		return pointsRemoved;
+	}
+
+	/**
+	 * Returns the number of bytes of the glyf table saved by the outline
+	 * simplification in the last build.
+	 * 
+	 * @see #setSimplifyTolerance(float)
+	 */
+	public int getBytesSaved() {
+		return bytesSaved;
+	}
+
+	/**
+	 * Add a glyph. If there already is a glyph for this character, it is
+	 * replaced by the new glyph.
 	 * 
 	 * @param c
 	 *            Character of the glyph.
@@ -445,19 +1612,40 @@ public class Fontastic {
 	 * 
 	 */
 	public FGlyph addGlyph(char c) {
+		return addGlyph((int) c);
+	}
 
-		FGlyph glyph = new FGlyph(c);
+	/**
+	 * Add a glyph by its Unicode code point, which can also be outside the
+	 * Basic Multilingual Plane (e.g. emoji). If there already is a glyph for
+	 * this code point, it is replaced by the new glyph.
+	 * 
+	 * @example f.addGlyph(0x1F600);
+	 * 
+	 * @param codePoint
+	 *            Unicode code point of the glyph.
+	 * 
+	 * @return FGlyph that has been created.
+	 * 
+	 */
+	public FGlyph addGlyph(int codePoint) {
+
+		if (!Character.isValidCodePoint(codePoint))
+			throw new IllegalArgumentException("Invalid code point: " + codePoint);
+
+		FGlyph glyph = new FGlyph(codePoint);
 		glyph.setAdvanceWidth(advanceWidth);
-		glyphs.add(glyph);
+		glyphs.put(glyph);
 		if (debug)
-			System.out.println("Glyph " + c + " added. Number of glyphs: "
-					+ glyphs.size());
+			System.out.println("Glyph " + new String(Character.toChars(codePoint))
+					+ " added. Number of glyphs: " + glyphs.size());
 		return glyph;
 
 	}
 
 	/**
-	 * Add a glyph and its one contour
+	 * Add a glyph and its one contour. If there already is a glyph for this
+	 * character, it is replaced by the new glyph.
 	 * 
 	 * @param c
 	 *            Character of the glyph.
@@ -470,22 +1658,32 @@ public class Fontastic {
 	 *         call getGlyph(char c) to retrieve it.
 	 */
 	public FGlyph addGlyph(char c, FContour contour) {
+		return addGlyph((int) c, contour);
+	}
 
-		FGlyph glyph = new FGlyph(c);
-		glyphs.add(glyph);
-		if (debug)
-			System.out.println("Glyph " + c + " added. Number of glyphs: "
-					+ glyphs.size());
+	/**
+	 * Add a glyph by its Unicode code point and its one contour. If there
+	 * already is a glyph for this code point, it is replaced by the new glyph.
+	 * 
+	 * @param codePoint
+	 *            Unicode code point of the glyph.
+	 * 
+	 * @param FContour
+	 *            Shape of the glyph as FContour.
+	 * 
+	 * @return The glyph FGlyph that has been created.
+	 */
+	public FGlyph addGlyph(int codePoint, FContour contour) {
 
+		FGlyph glyph = addGlyph(codePoint);
 		glyph.addContour(contour);
-
-		glyph.setAdvanceWidth(advanceWidth);
 		return glyph;
 
 	}
 
 	/**
-	 * Add a glyph and its contours
+	 * Add a glyph and its contours. If there already is a glyph for this
+	 * character, it is replaced by the new glyph.
 	 * 
 	 * @param c
 	 *            Character of the glyph.
@@ -498,18 +1696,27 @@ public class Fontastic {
 	 *         getGlyph(char c) to retrieve it.
 	 */
 	public FGlyph addGlyph(char c, FContour[] contours) {
+		return addGlyph((int) c, contours);
+	}
 
-		FGlyph glyph = new FGlyph(c);
-		glyphs.add(glyph);
-		if (debug)
-			System.out.println("Glyph " + c + " added. Number of glyphs: "
-					+ glyphs.size());
+	/**
+	 * Add a glyph by its Unicode code point and its contours. If there already
+	 * is a glyph for this code point, it is replaced by the new glyph.
+	 * 
+	 * @param codePoint
+	 *            Unicode code point of the glyph.
+	 * 
+	 * @param FContour
+	 *            [] Shape of the glyph in an array of FContour.
+	 * 
+	 * @return The FGlyph that has been created.
+	 */
+	public FGlyph addGlyph(int codePoint, FContour[] contours) {
 
+		FGlyph glyph = addGlyph(codePoint);
 		for (FContour contour : contours) {
-			// if (debug) System.out.println(p.x + " - " + p.y);
 			glyph.addContour(contour);
 		}
-		glyph.setAdvanceWidth(advanceWidth);
 		return glyph;
 
 	}
@@ -520,19 +1727,27 @@ public class Fontastic {
 	 * @param c
 	 *            The character of the glyph
 	 * 
-	 * @return The glyph
+	 * @return The glyph, or null if there is no glyph for this character
 	 */
 
 	public FGlyph getGlyph(char c) {
 
-		FGlyph glyph = null;
-		for (int i = 0; i < glyphs.size(); i++) {
-			if (glyphs.get(i).getGlyphChar() == c) {
-				glyph = glyphs.get(i);
-				break;
-			}
-		}
-		return glyph;
+		return glyphs.get(c);
+
+	}
+
+	/**
+	 * Get glyph by Unicode code point
+	 * 
+	 * @param codePoint
+	 *            The Unicode code point of the glyph
+	 * 
+	 * @return The glyph, or null if there is no glyph for this code point
+	 */
+
+	public FGlyph getGlyph(int codePoint) {
+
+		return glyphs.get(codePoint);
 
 	}
 
@@ -540,10 +1755,17 @@ public class Fontastic {
 	 * Engine getter
 	 * 
 	 * @return The doubletype Engine used for font creation, so that you can
-	 *         access all functions of doubletype in case you need them.
+	 *         access all functions of doubletype in case you need them. The
+	 *         engine is shared by all fonts, it has the typeface of this font
+	 *         selected until another font is built with doubletype.
 	 */
 	public Engine getEngine() {
-		return m_engine;
+		engineLock.lock();
+		try {
+			return engine();
+		} finally {
+			engineLock.unlock();
+		}
 	}
 
 	/**
@@ -553,7 +1775,8 @@ public class Fontastic {
 	 *         can access functions of doubletype in case you need them.
 	 */
 	public TypefaceFile getTypefaceFile() {
-		return m_engine.getTypeface();
+		getEngine();
+		return typeface;
 	}
 
 	/**
@@ -574,6 +1797,16 @@ public class Fontastic {
 		return WOFFfilename;
 	}
 
+	/**
+	 * Returns the .woff2 file name
+	 * 
+	 * @return The .woff2 file name, which is being created when you call build()
+	 *         with Format.WOFF2 in the output formats
+	 */
+	public String getWOFF2filename() {
+		return WOFF2filename;
+	}
+
 	private static void deleteFolderContents(File folder,
 			boolean deleteFolderItself) {
 		File[] files = folder.listFiles();
@@ -623,41 +1856,4 @@ public class Fontastic {
 		return sketchName;
 	}
 
-	// http://stackoverflow.com/questions/2368802/how-to-create-dynamic-template-string
-	// Author: cletus http://stackoverflow.com/users/18393/cletus
-	private static String replaceAll(String text, Map<String, String> params) {
-		return replaceAll(text, params, '%', '%');
-	}
-
-	// http://stackoverflow.com/questions/2368802/how-to-create-dynamic-template-string
-	// Author: cletus http://stackoverflow.com/users/18393/cletus
-	private static String replaceAll(String text, Map<String, String> params,
-			char leading, char trailing) {
-		String pattern = "";
-		if (leading != 0) {
-			pattern += leading;
-		}
-		pattern += "(\\w+)";
-		if (trailing != 0) {
-			pattern += trailing;
-		}
-		Pattern p = Pattern.compile(pattern);
-		Matcher m = p.matcher(text);
-		boolean result = m.find();
-		if (result) {
-			StringBuffer sb = new StringBuffer();
-			do {
-				String replacement = params.get(m.group(1));
-				if (replacement == null) {
-					replacement = m.group();
-				}
-				m.appendReplacement(sb, replacement);
-				result = m.find();
-			} while (result);
-			m.appendTail(sb);
-			return sb.toString();
-		}
-		return text;
-	}
-
 }